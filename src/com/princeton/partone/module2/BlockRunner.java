@@ -0,0 +1,78 @@
+package com.princeton.partone.module2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs seeded trials on a ForkJoinPool in fixed blocks, for PercolationStats
+ * and FiniteSizeSweep.
+ *
+ * Trials are cut into blocks of TRIALS_PER_STREAM, and block k draws from the
+ * k-th stream split off the master SplittableRandom. So which random numbers
+ * a trial sees depends only on the seed and its position, never on the
+ * thread count or on which worker ran its block.
+ */
+final class BlockRunner {
+    // Trials per RNG stream; fixed so results don't depend on the thread count
+    static final int TRIALS_PER_STREAM = 64;
+
+    // Runs trials [from, to) of a run, drawing from the block's own stream
+    interface Block<R> {
+        R run(int from, int to, SplittableRandom stream);
+    }
+
+    private BlockRunner() {
+    }
+
+    // Submit count trials to the pool as blocks, splitting one stream off master per block, in block order
+    static <R> List<CompletableFuture<R>> submit(ForkJoinPool pool, SplittableRandom master, int count,
+                                                 Block<R> block) {
+        List<CompletableFuture<R>> blocks = new ArrayList<>();
+        for (int from = 0; from < count; from += TRIALS_PER_STREAM) {
+            int start = from;
+            int end = Math.min(count, from + TRIALS_PER_STREAM);
+            SplittableRandom stream = master.split();
+            blocks.add(CompletableFuture.supplyAsync(() -> block.run(start, end, stream), pool));
+        }
+        return blocks;
+    }
+
+    // Skip the streams of the first trials of a run, a whole number of blocks
+    static void skip(SplittableRandom master, long trials) {
+        for (long done = 0; done < trials; done += TRIALS_PER_STREAM) {
+            master.split();
+        }
+    }
+
+    // Merge the blocks' statistics into stats in block order, whatever order they finish in
+    static void merge(List<? extends Future<RunningStats>> blocks, RunningStats stats) {
+        for (int i = 0; i < blocks.size(); i++) {
+            stats.merge(await(blocks.get(i)));
+            blocks.set(i, null);  // done with it
+        }
+    }
+
+    // Wait for every task
+    static void awaitAll(List<? extends Future<?>> tasks) {
+        for (Future<?> task : tasks) {
+            await(task);
+        }
+    }
+
+    // Result of a task; its failure is rethrown as an IllegalStateException
+    static <R> R await(Future<R> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a block", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Block failed", e.getCause());
+        }
+    }
+}
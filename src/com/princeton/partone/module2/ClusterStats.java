@@ -0,0 +1,103 @@
+package com.princeton.partone.module2;
+
+/**
+ * Cluster observables for Percolation, kept up to date on every open and
+ * union so they can be read at any time without scanning the grid:
+ *   - size of every cluster (indexed by its union-find root)
+ *   - histogram of cluster sizes, with the distinct sizes in a sparse set
+ *   - number of clusters, largest cluster, sum of squared sizes
+ * Every update is O(1); listing the distinct sizes is O(distinct sizes),
+ * which is at most sqrt(2N) since the sizes sum to at most N.
+ */
+class ClusterStats {
+    private final int[] size;       // size[root] = sites in root's cluster
+    private final int[] countOf;    // countOf[s] = clusters of size s
+    private final int[] position;   // position[s] = index of s in sizes, if present
+    private final int[] sizes;      // the distinct sizes present, unordered
+    private int distinct;
+    private int clusters;
+    private int largest;
+    private long sumOfSquares;
+
+    ClusterStats(int sites) {
+        this.size = new int[sites];
+        this.countOf = new int[sites + 1];
+        this.position = new int[sites + 1];
+        this.sizes = new int[(int) Math.sqrt(2.0 * sites) + 2];
+    }
+
+    // Clears the histogram in O(distinct sizes); size[] is rewritten by open()
+    void reset() {
+        for (int i = 0; i < distinct; i++) {
+            countOf[sizes[i]] = 0;
+        }
+        distinct = 0;
+        clusters = 0;
+        largest = 0;
+        sumOfSquares = 0;
+    }
+
+    // A newly opened site is a cluster of size 1
+    void open(int site) {
+        size[site] = 1;
+        add(1);
+        clusters++;
+        largest = Math.max(largest, 1);
+        sumOfSquares += 1;
+    }
+
+    // Clusters rooted at rootA and rootB were merged under newRoot
+    void merge(int rootA, int rootB, int newRoot) {
+        int a = size[rootA];
+        int b = size[rootB];
+        int merged = a + b;
+        remove(a);
+        remove(b);
+        add(merged);
+        size[newRoot] = merged;
+        clusters--;
+        largest = Math.max(largest, merged);
+        sumOfSquares += 2L * a * b;  // (a+b)^2 - a^2 - b^2
+    }
+
+    private void add(int s) {
+        if (countOf[s]++ == 0) {
+            position[s] = distinct;
+            sizes[distinct++] = s;
+        }
+    }
+
+    private void remove(int s) {
+        if (--countOf[s] == 0) {
+            int last = sizes[--distinct];
+            sizes[position[s]] = last;
+            position[last] = position[s];
+        }
+    }
+
+    int clusters() {
+        return clusters;
+    }
+
+    int largest() {
+        return largest;
+    }
+
+    int sizeOf(int root) {
+        return size[root];
+    }
+
+    int clustersOfSize(int s) {
+        return s >= 1 && s < countOf.length ? countOf[s] : 0;
+    }
+
+    int[] distinctSizes() {
+        int[] copy = new int[distinct];
+        System.arraycopy(sizes, 0, copy, 0, distinct);
+        return copy;
+    }
+
+    long sumOfSquares() {
+        return sumOfSquares;
+    }
+}
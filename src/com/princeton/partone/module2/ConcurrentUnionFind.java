@@ -0,0 +1,190 @@
+package com.princeton.partone.module2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free union-find for many threads at once (Jayanti–Tarjan style).
+ *
+ * Every site has a fixed random priority, and a root is only ever linked
+ * under a root of higher priority, with a single CAS that fails if it is no
+ * longer a root. So priorities strictly increase up every path, there are
+ * never cycles, and find() reaches a root in a bounded number of steps
+ * whatever other threads do: find and connected are wait-free, union is
+ * lock-free. find() compresses with path halving; a failed halving CAS just
+ * means another thread already moved the pointer up, so it is ignored.
+ *
+ * count() is exact: it is decremented once per CAS that merged two roots.
+ * reset() and reset(k) are not thread-safe.
+ */
+public class ConcurrentUnionFind implements DynamicConnectivity {
+    private final AtomicIntegerArray parent;
+    private final int[] priority;  // a random permutation of 0..n-1, never changes
+    private final AtomicInteger count;
+
+    public ConcurrentUnionFind(int n) {
+        this(n, 0x5EEDL);
+    }
+
+    // same, with the random linking priorities drawn from the given seed
+    public ConcurrentUnionFind(int n, long seed) {
+        parent = new AtomicIntegerArray(n);
+        priority = new int[n];
+        count = new AtomicInteger();
+
+        // Fisher-Yates: priority[i] is the position of i in a random order
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < n; i++) {
+            int j = random.nextInt(i + 1);
+            priority[i] = priority[j];
+            priority[j] = i;
+        }
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < parent.length(); i++) {
+            parent.set(i, i);
+        }
+        count.set(parent.length());
+    }
+
+    @Override
+    public void reset(int k) {
+        for (int i = 0; i < k; i++) {
+            parent.set(i, i);
+        }
+        count.set(parent.length());
+    }
+
+    @Override
+    public int find(int p) {
+        int next = parent.get(p);
+        while (next != p) {
+            int grandparent = parent.get(next);
+            if (grandparent != next) {
+                parent.compareAndSet(p, next, grandparent);  // path halving
+            }
+            p = grandparent;
+            next = parent.get(p);
+        }
+        return p;
+    }
+
+    @Override
+    public boolean union(int p, int q) {
+        while (true) {
+            int rootP = find(p);
+            int rootQ = find(q);
+            if (rootP == rootQ) {
+                return false;
+            }
+
+            // Link the lower-priority root under the other
+            if (priority[rootP] > priority[rootQ]) {
+                int tmp = rootP;
+                rootP = rootQ;
+                rootQ = tmp;
+            }
+            if (parent.compareAndSet(rootP, rootP, rootQ)) {
+                count.decrementAndGet();
+                return true;
+            }
+            // rootP was linked by another thread meanwhile; retry from the new roots
+        }
+    }
+
+    // Wait-free: if p's root is still a root after q's root was found, they were apart
+    @Override
+    public boolean connected(int p, int q) {
+        while (true) {
+            int rootP = find(p);
+            int rootQ = find(q);
+            if (rootP == rootQ) {
+                return true;
+            }
+            if (parent.get(rootP) == rootP) {
+                return false;
+            }
+            p = rootP;
+            q = rootQ;
+        }
+    }
+
+    @Override
+    public int count() {
+        return count.get();
+    }
+
+    // Unions (p[i], q[i]) for i in [from, to), one contiguous slice per worker of the pool
+    void unionParallel(int[] p, int[] q, int from, int to, ForkJoinPool pool) {
+        int slices = pool.getParallelism();
+        List<Future<?>> tasks = new ArrayList<>();
+        long length = to - from;
+        for (int t = 0; t < slices; t++) {
+            int start = (int) (from + length * t / slices);
+            int end = (int) (from + length * (t + 1) / slices);
+            tasks.add(pool.submit(() -> {
+                for (int i = start; i < end; i++) {
+                    union(p[i], q[i]);
+                }
+            }));
+        }
+        BlockRunner.awaitAll(tasks);
+    }
+
+    // test client: many threads union random pairs; must match a sequential UnionFind
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int edges = n;
+
+        int[] from = new int[edges];
+        int[] to = new int[edges];
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < edges; i++) {
+            from[i] = random.nextInt(n);
+            to[i] = random.nextInt(n);
+        }
+
+        UnionFind sequential = new UnionFind(n);
+        for (int i = 0; i < edges; i++) {
+            sequential.union(from[i], to[i]);
+        }
+
+        ConcurrentUnionFind concurrent = new ConcurrentUnionFind(n);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            pool.execute(() -> {
+                for (int i = first; i < edges; i += threads) {
+                    concurrent.union(from[i], to[i]);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        int mismatches = 0;
+        for (int i = 0; i < n; i++) {
+            int j = from[i % edges];
+            if (sequential.connected(i, j) != concurrent.connected(i, j)) {
+                mismatches++;
+            }
+        }
+        System.out.println(threads + " threads, " + edges + " unions in " + millis + " ms");
+        System.out.println("components: " + concurrent.count() + " (expected: " + sequential.count() + ")");
+        System.out.println("connectivity mismatches: " + mismatches + " (expected: 0)");
+    }
+}
@@ -0,0 +1,68 @@
+package com.princeton.partone.module2;
+
+/**
+ * Union-find over the sites 0..n-1.
+ *
+ * find() must return a canonical site for the component (its root), stable
+ * until the next union, so callers can keep per-component data indexed by
+ * root (as Percolation does with its top/bottom flags). After union(p, q)
+ * the new root is one of the two previous roots.
+ */
+public interface DynamicConnectivity {
+
+    // canonical site (root) of the component containing p
+    int find(int p);
+
+    // merges the components of p and q; false if they were already connected
+    boolean union(int p, int q);
+
+    // number of components
+    int count();
+
+    // back to n singleton components, reusing the existing arrays
+    void reset();
+
+    /**
+     * The same when no union so far has involved a site >= k, so only sites
+     * [0, k) need restoring: O(k) instead of O(n) where the implementation
+     * supports it, a full reset() otherwise.
+     */
+    default void reset(int k) {
+        reset();
+    }
+
+    default boolean connected(int p, int q) {
+        return find(p) == find(q);
+    }
+
+    default boolean isFullyConnected() {
+        return count() == 1;
+    }
+
+    /**
+     * Unions (p[i], q[i]) for i in [from, to) in one loop, returning the
+     * first i after whose union everything is connected, or -1. Stops there,
+     * since every later union would be a no-op.
+     */
+    default int unionAll(int[] p, int[] q, int from, int to) {
+        if (from < 0 || to > p.length || to > q.length || from > to) {
+            throw new IllegalArgumentException(
+                    "Invalid range [" + from + ", " + to + ") for " + Math.min(p.length, q.length) + " pairs");
+        }
+        for (int i = from; i < to; i++) {
+            union(p[i], q[i]);
+            if (isFullyConnected()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // the same over edges [from, to) of a batch
+    default int unionAll(EdgeBatch edges, int from, int to) {
+        if (to > edges.size()) {
+            throw new IllegalArgumentException("Invalid range [" + from + ", " + to + ") for " + edges.size() + " edges");
+        }
+        return unionAll(edges.member1(), edges.member2(), from, to);
+    }
+}
@@ -0,0 +1,193 @@
+package com.princeton.partone.module2;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Earliest time at which an unsorted edge log connects all n members,
+ * without sorting it.
+ *
+ * That time is the largest timestamp on a bottleneck spanning tree, found
+ * Camerini-style by repeatedly splitting on a pivot timestamp t (the median
+ * of a random sample):
+ *   - if the edges before t already connect everything, recurse on them;
+ *   - else if adding the edges at t does, the answer is t;
+ *   - else contract the components formed so far into single vertices and
+ *     recurse on the edges after t.
+ * Contraction keeps only the vertices that still have edges (a component
+ * without one can never be connected), so a level with m edges has O(m)
+ * vertices. One union-find over n sites serves every level: a level only
+ * touches sites [0, k), and reset(k) restores just those. Each level keeps
+ * about half the edges, so the total work is O(n + m) expected union-find
+ * operations, against O(m log m) for sorting first. With more than one
+ * thread the unions of each level run on all of them through a
+ * ConcurrentUnionFind; with one, a plain UnionFind.
+ */
+final class EarliestConnection {
+    private static final int SAMPLE = 1024;
+    // Below this many edges a level is not worth splitting across threads
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private final ForkJoinPool pool;  // null with one thread
+    private final int n;
+    private final DynamicConnectivity uf;
+    private final int[] label;  // contracted id of a root while contracting, else -1
+    private final int[] roots;  // the roots labelled so far
+    private final SplittableRandom random = new SplittableRandom(1);
+    private int k;  // this level's vertices are [0, k)
+
+    private EarliestConnection(int n, ForkJoinPool pool) {
+        this.n = n;
+        this.pool = pool;
+        this.uf = pool == null ? new UnionFind(n) : new ConcurrentUnionFind(n);
+        this.label = new int[n];
+        this.roots = new int[n];
+        Arrays.fill(label, -1);
+        this.k = n;
+    }
+
+    // Earliest fully-connected timestamp, or -1 if the edges never connect everyone
+    static int find(int n, EdgeBatch edges, int threads) {
+        int m = edges.size();
+        int[] time = edges.timestamps();
+        int[] member1 = edges.member1();
+        int[] member2 = edges.member2();
+        edges.validateMembers(n);
+        if (m == 0) {
+            return -1;
+        }
+        if (n == 1) {
+            // Connected after the first friendship, as in the sorted version
+            int earliest = time[0];
+            for (int i = 1; i < m; i++) {
+                earliest = Math.min(earliest, time[i]);
+            }
+            return earliest;
+        }
+
+        ForkJoinPool pool = threads == 1 ? null : new ForkJoinPool(threads);
+        try {
+            // Work on copies: every level rewrites the member ids
+            return new EarliestConnection(n, pool).solve(
+                    Arrays.copyOf(time, m),
+                    Arrays.copyOf(member1, m),
+                    Arrays.copyOf(member2, m), m);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // Edges 0..m-1 of the arrays, over all n vertices
+    private int solve(int[] time, int[] a, int[] b, int m) {
+        m = contract(time, a, b, 0, m);  // drop the members no edge touches
+        while (m > 0) {
+            int pivot = samplePivot(time, m);
+
+            // Three-way partition in place: [0, lt) before, [lt, gt) at, [gt, m) after the pivot
+            int lt = 0;
+            int gt = m;
+            for (int i = 0; i < gt; ) {
+                if (time[i] < pivot) {
+                    swap(time, a, b, i++, lt++);
+                } else if (time[i] > pivot) {
+                    swap(time, a, b, i, --gt);
+                } else {
+                    i++;
+                }
+            }
+
+            unionRange(a, b, 0, lt);
+            if (components() == 1) {
+                uf.reset(k);  // O(k), and k <= lt + 1 since lt edges connect k vertices
+                m = lt;  // the answer is before the pivot; drop the rest
+                continue;
+            }
+            unionRange(a, b, lt, gt);
+            if (components() == 1) {
+                return pivot;
+            }
+            m = contract(time, a, b, gt, m);
+        }
+        return -1;  // some component has no edge left
+    }
+
+    // Components among this level's vertices; the sites from k to n are always singletons
+    private int components() {
+        return uf.count() - (n - k);
+    }
+
+    /**
+     * Contracts the current components: relabels those that edges [from, to)
+     * touch as vertices 0, 1, ..., moves the edges between different
+     * components to the front with their new labels, and resets the
+     * union-find for the next level. Returns the number of edges kept, or -1
+     * if some component has no edge left and so can never be connected.
+     */
+    private int contract(int[] time, int[] a, int[] b, int from, int to) {
+        int components = components();
+        int labels = 0;
+        int kept = 0;
+        for (int i = from; i < to; i++) {
+            int p = uf.find(a[i]);
+            int q = uf.find(b[i]);
+            if (p == q) {
+                continue;
+            }
+            if (label[p] < 0) {
+                roots[labels] = p;
+                label[p] = labels++;
+            }
+            if (label[q] < 0) {
+                roots[labels] = q;
+                label[q] = labels++;
+            }
+            time[kept] = time[i];
+            a[kept] = label[p];
+            b[kept] = label[q];
+            kept++;
+        }
+
+        for (int j = 0; j < labels; j++) {
+            label[roots[j]] = -1;
+        }
+        uf.reset(k);
+        k = labels;
+        return labels < components ? -1 : kept;
+    }
+    // Median timestamp of a random sample of the first m edges
+    private int samplePivot(int[] time, int m) {
+        int size = Math.min(SAMPLE, m);
+        int[] sample = new int[size];
+        for (int i = 0; i < size; i++) {
+            sample[i] = time[size == m ? i : random.nextInt(m)];
+        }
+        Arrays.sort(sample);
+        return sample[size / 2];
+    }
+
+    private void unionRange(int[] a, int[] b, int from, int to) {
+        if (pool == null || to - from < PARALLEL_THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                uf.union(a[i], b[i]);
+            }
+            return;
+        }
+
+        ((ConcurrentUnionFind) uf).unionParallel(a, b, from, to, pool);
+    }
+
+    private static void swap(int[] time, int[] a, int[] b, int i, int j) {
+        int t = time[i];
+        time[i] = time[j];
+        time[j] = t;
+        t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+        t = b[i];
+        b[i] = b[j];
+        b[j] = t;
+    }
+}
@@ -0,0 +1,111 @@
+package com.princeton.partone.module2;
+
+import java.nio.file.Path;
+
+/**
+ * A fixed-capacity batch of timestamped edges stored as three parallel int
+ * arrays (struct of arrays) instead of one Friendship object per edge: 12
+ * bytes per edge with no object headers or pointers, and scans read memory
+ * sequentially.
+ *
+ * Edge i is (timestamp(i), member1(i), member2(i)). Bulk loops such as
+ * DynamicConnectivity.unionAll read the arrays through package-private
+ * accessors.
+ */
+public final class EdgeBatch {
+    private final int[] timestamps;
+    private final int[] member1;
+    private final int[] member2;
+    private int size;
+
+    public EdgeBatch(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must be non-negative");
+        }
+        timestamps = new int[capacity];
+        member1 = new int[capacity];
+        member2 = new int[capacity];
+    }
+
+    // appends one edge
+    public void add(int timestamp, int p, int q) {
+        if (size == timestamps.length) {
+            throw new IllegalStateException("EdgeBatch is full: capacity=" + timestamps.length);
+        }
+        timestamps[size] = timestamp;
+        member1[size] = p;
+        member2[size] = q;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    public int timestamp(int i) {
+        validate(i);
+        return timestamps[i];
+    }
+
+    public int member1(int i) {
+        validate(i);
+        return member1[i];
+    }
+
+    public int member2(int i) {
+        validate(i);
+        return member2[i];
+    }
+
+    // drops every edge, keeping the arrays for reuse
+    public void clear() {
+        size = 0;
+    }
+
+    // Backing arrays for bulk loops: only [0, size()) is valid, and callers must not write to them
+    int[] timestamps() {
+        return timestamps;
+    }
+
+    int[] member1() {
+        return member1;
+    }
+
+    int[] member2() {
+        return member2;
+    }
+
+    // Every edge of a log file (see FriendshipLog), in file order
+    public static EdgeBatch read(Path log) {
+        long edges = FriendshipLog.count(log);
+        if (edges > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many edges for one batch: " + edges);
+        }
+
+        EdgeBatch batch = new EdgeBatch((int) edges);
+        FriendshipLog.read(log, (timestamp, p, q) -> {
+            batch.add(timestamp, p, q);
+            return true;
+        });
+        return batch;
+    }
+
+    // Every member id must be a site in [0, n)
+    void validateMembers(int n) {
+        for (int i = 0; i < size; i++) {
+            if (member1[i] < 0 || member1[i] >= n || member2[i] < 0 || member2[i] >= n) {
+                throw new IllegalArgumentException("Member out of range in edge " + i + ", n=" + n);
+            }
+        }
+    }
+
+    private void validate(int i) {
+        if (i < 0 || i >= size) {
+            throw new IllegalArgumentException("Edge index out of bounds: " + i + ", size=" + size);
+        }
+    }
+}
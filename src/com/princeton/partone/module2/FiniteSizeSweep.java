@@ -0,0 +1,325 @@
+package com.princeton.partone.module2;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finite-size scaling sweep: runs a grid of cells in one process and streams
+ * one CSV row per cell as it finishes.
+ *
+ * A cell is either
+ *   (n)    the percolation threshold on an n-by-n grid (PercolationStats), or
+ *   (n, p) the spanning probability of an n-by-n grid with sites open with
+ *          probability p.
+ * Every cell's blocks of trials go to one shared worker pool up front,
+ * largest n first, so the longest cells start first and the blocks of small
+ * cells fill any idle workers. Rows are written as cells complete. Each
+ * cell's seed is derived from the sweep seed, n and p alone, so a cell's
+ * result does not depend on the order or on which cells ran before.
+ * Rerunning with the same output file skips the cells it already holds, so
+ * an interrupted sweep resumes where it stopped.
+ *
+ * CSV columns: n,p,trials,seed,mean,stddev,confidenceLo,confidenceHi,seconds
+ * (p is empty for threshold cells; seconds is the wall time from the cell's
+ * first block starting to its last one finishing)
+ */
+public class FiniteSizeSweep {
+    private static final String HEADER = "n,p,trials,seed,mean,stddev,confidenceLo,confidenceHi,seconds";
+
+    private final int[] sizes;
+    private final double[] probabilities;
+    private final int trials;
+    private final long seed;
+    private final int threads;
+
+    /**
+     * Sweep over the given sizes; for each size a threshold cell, plus one
+     * spanning cell per entry of probabilities (which may be empty).
+     */
+    public FiniteSizeSweep(int[] sizes, double[] probabilities, int trials, long seed, int threads) {
+        if (sizes.length == 0 || trials <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Need at least one size, and trials and threads greater than 0");
+        }
+        for (int n : sizes) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("n must be greater than 0: " + n);
+            }
+        }
+        for (double p : probabilities) {
+            if (!(p >= 0.0 && p <= 1.0)) {
+                throw new IllegalArgumentException("p must be in [0, 1]: " + p);
+            }
+        }
+
+        this.sizes = sizes.clone();
+        this.probabilities = probabilities.clone();
+        this.trials = trials;
+        this.seed = seed;
+        this.threads = threads;
+    }
+
+    /**
+     * Runs every cell not already in out, appending a row per finished cell.
+     * Returns the number of cells run.
+     */
+    public int run(Path out) {
+        Set<String> done = completedCells(out);
+        List<double[]> cells = new ArrayList<>();  // {n, p}, p NaN for a threshold cell
+        for (int n : sizes) {
+            if (!done.contains(key(n, Double.NaN))) {
+                cells.add(new double[] {n, Double.NaN});
+            }
+            for (double p : probabilities) {
+                if (!done.contains(key(n, p))) {
+                    cells.add(new double[] {n, p});
+                }
+            }
+        }
+        // Cost grows with n^2, so largest first
+        cells.sort((a, b) -> Double.compare(b[0], a[0]));
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+        BlockingQueue<Cell> finished = new LinkedBlockingQueue<>();
+        try (BufferedWriter writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (done.isEmpty() && Files.size(out) == 0) {
+                writer.write(HEADER);
+                writer.newLine();
+                writer.flush();
+            } else if (!endsWithNewline(out)) {
+                writer.newLine();  // end a row cut short by a kill, so it stays skipped
+            }
+
+            // Submit every cell's blocks at once; the pool takes them largest cell first
+            for (double[] coordinates : cells) {
+                Cell cell = new Cell((int) coordinates[0], coordinates[1]);
+                cell.blocks = submit(pool, workspaces, cell);
+                CompletableFuture.allOf(cell.blocks.toArray(new CompletableFuture<?>[0]))
+                        .whenComplete((ignored, failure) -> {
+                            cell.seconds = (System.nanoTime() - cell.started.get()) / 1e9;
+                            finished.add(cell);
+                        });
+            }
+
+            for (int i = 0; i < cells.size(); i++) {
+                Cell cell = take(finished);
+                RunningStats stats = new RunningStats();
+                BlockRunner.merge(cell.blocks, stats);
+
+                writer.write(String.format(Locale.ROOT, "%s,%d,%d,%s,%s,%s,%s,%.3f",
+                        key(cell.n, cell.p), stats.count(), cell.seed, stats.mean(), stats.stddev(),
+                        stats.confidenceLo(), stats.confidenceHi(), cell.seconds));
+                writer.newLine();
+                writer.flush();  // a finished cell survives a kill
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + out, e);
+        } finally {
+            pool.shutdownNow();
+        }
+        return cells.size();
+    }
+
+    // One cell of the sweep while its blocks run
+    private final class Cell {
+        final int n;
+        final double p;  // NaN for a threshold cell
+        final long seed;
+        final AtomicLong started = new AtomicLong(Long.MAX_VALUE);  // earliest block start, nanoTime
+        List<CompletableFuture<RunningStats>> blocks;
+        double seconds;
+
+        Cell(int n, double p) {
+            this.n = n;
+            this.p = p;
+            this.seed = cellSeed(n, p);
+        }
+
+        // called by each block as it starts
+        void start() {
+            started.accumulateAndGet(System.nanoTime(), Math::min);
+        }
+    }
+
+    /**
+     * Per-worker scratch space, kept across cells: the grid for the size the
+     * worker last ran, and an index buffer for the largest size so far. Cells
+     * run largest first, so a worker rebuilds its grid about once per size.
+     */
+    private static final class Workspace {
+        private Percolation grid;
+        private int n;
+        private int[] sites = new int[0];
+
+        Percolation grid(int n) {
+            if (grid == null || this.n != n) {
+                grid = null;  // let the old grid go before building the new one
+                grid = new Percolation(n);
+                this.n = n;
+            }
+            return grid;
+        }
+
+        int[] sites(int length) {
+            if (sites.length < length) {
+                sites = new int[length];
+            }
+            return sites;
+        }
+    }
+
+    private static Cell take(BlockingQueue<Cell> finished) {
+        try {
+            return finished.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for cells", e);
+        }
+    }
+
+    // Cells already in out, as "n,p" keys; a partial last line is ignored, and rows from
+    // another trial count or sweep seed are rejected rather than mixed in
+    private Set<String> completedCells(Path out) {
+        Set<String> done = new HashSet<>();
+        if (!Files.exists(out)) {
+            return done;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(out, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return done;
+            }
+            if (!header.equals(HEADER)) {
+                throw new IllegalArgumentException("Not a sweep results file: " + out);
+            }
+
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] fields = line.split(",", -1);
+                if (fields.length != 9) {
+                    continue;
+                }
+                if (Integer.parseInt(fields[2]) != trials) {
+                    throw new IllegalArgumentException(
+                            out + " was written with " + fields[2] + " trials per cell, not " + trials);
+                }
+                double p = fields[1].isEmpty() ? Double.NaN : Double.parseDouble(fields[1]);
+                if (Long.parseLong(fields[3]) != cellSeed(Integer.parseInt(fields[0]), p)) {
+                    throw new IllegalArgumentException(out + " was written with a different seed than "
+                            + seed + " (cell " + fields[0] + "," + fields[1] + " has seed " + fields[3] + ")");
+                }
+                done.add(fields[0] + "," + fields[1]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + out, e);
+        }
+        return done;
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            if (channel.size() == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private static String key(int n, double p) {
+        return n + "," + (Double.isNaN(p) ? "" : Double.toString(p));
+    }
+
+    // Mix the sweep seed with the cell's coordinates, independent of cell order
+    private long cellSeed(int n, double p) {
+        long bits = Double.isNaN(p) ? 0L : Double.doubleToLongBits(p);
+        return new SplittableRandom(seed ^ (n * 0x9E3779B97F4A7C15L) ^ bits).nextLong();
+    }
+
+    /**
+     * Submits the cell's blocks of trials, each returning its statistics.
+     * A threshold cell runs the same blocks as PercolationStats with the
+     * cell's seed. A spanning cell measures the fraction of trials in which
+     * an n-by-n grid with each site open with probability p percolates,
+     * opening each grid with one openAll.
+     */
+    private List<CompletableFuture<RunningStats>> submit(ForkJoinPool pool, ThreadLocal<Workspace> workspaces,
+                                                         Cell cell) {
+        int n = cell.n;
+        double p = cell.p;
+        SplittableRandom master = new SplittableRandom(cell.seed);
+        if (Double.isNaN(p)) {
+            return BlockRunner.submit(pool, master, trials, (from, to, stream) -> {
+                cell.start();
+                return PercolationStats.runBlock(workspaces.get().grid(n), n, stream, to - from);
+            });
+        }
+
+        return BlockRunner.submit(pool, master, trials, (from, to, stream) -> {
+            cell.start();
+            Workspace workspace = workspaces.get();
+            Percolation perc = workspace.grid(n);
+            int[] open = workspace.sites(n * n);
+            RunningStats block = new RunningStats();
+            for (int i = from; i < to; i++) {
+                int count = 0;
+                for (int site = 0; site < n * n; site++) {
+                    if (stream.nextDouble() < p) {
+                        open[count++] = site;
+                    }
+                }
+                perc.reset();
+                perc.openAll(open, 0, count);
+                block.add(perc.percolates() ? 1.0 : 0.0);
+            }
+            return block;
+        });
+    }
+
+    // test client
+    public static void main(String[] args) {
+        if (args.length != 5 && args.length != 6) {
+            System.out.println("Usage: java com.princeton.partone.module2.FiniteSizeSweep "
+                    + "out.csv n1,n2,... trials seed threads [p1,p2,...]");
+            return;
+        }
+
+        String[] n = args[1].split(",");
+        int[] sizes = new int[n.length];
+        for (int i = 0; i < n.length; i++) {
+            sizes[i] = Integer.parseInt(n[i].trim());
+        }
+        String[] p = args.length == 6 ? args[5].split(",") : new String[0];
+        double[] probabilities = new double[p.length];
+        for (int i = 0; i < p.length; i++) {
+            probabilities[i] = Double.parseDouble(p[i].trim());
+        }
+
+        FiniteSizeSweep sweep = new FiniteSizeSweep(sizes, probabilities,
+                Integer.parseInt(args[2]), Long.parseLong(args[3]), Integer.parseInt(args[4]));
+        int ran = sweep.run(Paths.get(args[0]));
+        System.out.println("Ran " + ran + " cells into " + args[0]);
+    }
+}
@@ -0,0 +1,152 @@
+package com.princeton.partone.module2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a friendship log straight off a memory-mapped file, one edge at a
+ * time, without building Friendship objects or copying the file into the heap.
+ *
+ * Two formats, told apart by the first four bytes:
+ *   binary: int magic 0x464C4F47 ("FLOG"), then 12-byte big-endian records
+ *           (int timestamp, int member1, int member2)
+ *   text:   one "timestamp member1 member2" line per edge, fields separated
+ *           by spaces or tabs; blank lines are skipped
+ * The file is mapped in windows of up to 1 GiB, so logs of any length work.
+ */
+final class FriendshipLog {
+    static final int MAGIC = 0x464C4F47;
+    static final int RECORD_BYTES = 12;
+    private static final long WINDOW = 1L << 30;
+
+    // Receives edges in file order; return false to stop reading
+    interface EdgeSink {
+        boolean accept(int timestamp, int member1, int member2);
+    }
+
+    private FriendshipLog() {
+    }
+
+    // Feed every edge of file to sink until it returns false or the file ends
+    static void read(Path file, EdgeSink sink) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= 4 && channel.map(FileChannel.MapMode.READ_ONLY, 0, 4).getInt() == MAGIC) {
+                readBinary(channel, size, sink);
+            } else {
+                readText(channel, size, sink);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read friendship log " + file, e);
+        }
+    }
+
+    // Number of edges in file: from the size for binary logs, one counting pass for text
+    static long count(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= 4 && channel.map(FileChannel.MapMode.READ_ONLY, 0, 4).getInt() == MAGIC) {
+                if ((size - 4) % RECORD_BYTES != 0) {
+                    throw new IllegalArgumentException("Truncated binary friendship log: " + size + " bytes");
+                }
+                return (size - 4) / RECORD_BYTES;
+            }
+
+            long[] edges = {0};
+            readText(channel, size, (timestamp, member1, member2) -> {
+                edges[0]++;
+                return true;
+            });
+            return edges[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read friendship log " + file, e);
+        }
+    }
+
+    private static void readBinary(FileChannel channel, long size, EdgeSink sink) throws IOException {
+        if ((size - 4) % RECORD_BYTES != 0) {
+            throw new IllegalArgumentException("Truncated binary friendship log: " + size + " bytes");
+        }
+
+        long window = WINDOW - WINDOW % RECORD_BYTES;
+        for (long position = 4; position < size; position += window) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(window, size - position));
+            while (buffer.hasRemaining()) {
+                if (!sink.accept(buffer.getInt(), buffer.getInt(), buffer.getInt())) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Parses in place; a line cut off by the end of a window is re-read from the next one
+    private static void readText(FileChannel channel, long size, EdgeSink sink) throws IOException {
+        int[] fields = new int[3];
+        long position = 0;
+        while (position < size) {
+            long length = Math.min(WINDOW, size - position);
+            boolean last = position + length == size;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            int lineStart = 0;
+            int field = 0;
+            boolean inNumber = false;
+            long value = 0;
+            for (int i = 0; i <= buffer.limit(); i++) {
+                byte b;
+                if (i < buffer.limit()) {
+                    b = buffer.get(i);
+                } else if (last) {
+                    b = '\n';  // end the final line if the file does not
+                } else {
+                    break;
+                }
+
+                if (b >= '0' && b <= '9') {
+                    if (!inNumber && field == fields.length) {
+                        throw badLine(position + lineStart, "more than three fields");
+                    }
+                    value = value * 10 + (b - '0');
+                    if (value > Integer.MAX_VALUE) {
+                        throw badLine(position + lineStart, "number out of range");
+                    }
+                    inNumber = true;
+                    continue;
+                }
+                if (inNumber) {
+                    fields[field++] = (int) value;
+                    value = 0;
+                    inNumber = false;
+                }
+
+                if (b == '\n') {
+                    if (field == fields.length) {
+                        if (!sink.accept(fields[0], fields[1], fields[2])) {
+                            return;
+                        }
+                    } else if (field != 0) {
+                        throw badLine(position + lineStart, "expected three fields");
+                    }
+                    field = 0;
+                    lineStart = i + 1;
+                } else if (b != ' ' && b != '\t' && b != '\r') {
+                    throw badLine(position + lineStart, "unexpected character '" + (char) b + "'");
+                }
+            }
+
+            if (lineStart == 0 && !last) {
+                throw badLine(position, "line longer than the mapping window");
+            }
+            position += last ? length : lineStart;
+        }
+    }
+
+    private static IllegalArgumentException badLine(long offset, String problem) {
+        return new IllegalArgumentException("Bad friendship log line at byte " + offset + ": " + problem);
+    }
+}
@@ -0,0 +1,308 @@
+package com.princeton.partone.module2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Percolation for grids with more than 2^31 sites.
+ *
+ * Same model and API as {@link Percolation}, but every index is a long and
+ * the union-find lives in a memory-mapped file instead of on the heap:
+ *   parent : one long per site, stored as (parent + 1) so that the zero
+ *            bytes of a fresh sparse file already mean "I am a root"
+ *   meta   : one byte per site, top/bottom flags plus union-by-rank rank
+ *   open   : one bit per site
+ * That is ~9.1 bytes of disk per site and only a small chunk table on the
+ * heap (one reference per GiB of file), so a 100k x 100k lattice needs no
+ * special heap settings; the OS pages in what is touched. The file can be
+ * at most MappedStorage.MAX_SIZE, 32 TiB, which puts MAX_N at about 1.96 million.
+ */
+public class LargePercolation implements AutoCloseable {
+    // Largest n whose backing file (~9.1 * n^2 bytes) fits in MappedStorage.MAX_SIZE
+    public static final long MAX_N = maxN();
+
+    private static final int RANK_SHIFT = 2;
+
+    private final long n;
+    private final MappedStorage storage;
+    private final Path file;
+    private final boolean deleteOnClose;
+    private final long metaBase;
+    private final long openBase;
+    private long openSites;
+    private boolean percolates;
+
+    // creates n-by-n grid backed by a temporary file, deleted on close()
+    public LargePercolation(long n) {
+        this(checkSize(n), createTempFile(), true);
+    }
+
+    // creates n-by-n grid backed by the given file, which must be empty or absent; it is kept on close()
+    public LargePercolation(long n, Path file) {
+        this(checkSize(n), file, false);
+    }
+
+    private LargePercolation(long n, Path file, boolean deleteOnClose) {
+        // Stale data would read as sites already open and connected
+        try {
+            if (Files.exists(file) && Files.size(file) > 0) {
+                throw new IllegalArgumentException("Backing file must be empty or absent: " + file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot check " + file, e);
+        }
+
+        this.n = n;
+        this.file = file;
+        this.deleteOnClose = deleteOnClose;
+        this.metaBase = metaBase(n);
+        this.openBase = openBase(n);
+        this.storage = openStorage(file, fileSize(n), deleteOnClose);
+        this.openSites = 0;
+        this.percolates = false;
+    }
+
+    // Checked before any file is created
+    private static long checkSize(long n) {
+        if (n <= 0 || n > MAX_N) {
+            throw new IllegalArgumentException("n must be in [1, " + MAX_N + "]: " + n);
+        }
+        return n;
+    }
+
+    // Layout of the backing file: parent longs, then meta bytes, then the open bitset
+    private static long metaBase(long n) {
+        return n * n * Long.BYTES;
+    }
+
+    // Keep the bitset 8-byte aligned so its longs never straddle a chunk
+    private static long openBase(long n) {
+        return (metaBase(n) + n * n + 7) & ~7L;
+    }
+
+    private static long fileSize(long n) {
+        return openBase(n) + ((n * n + 63) >>> 6) * Long.BYTES;
+    }
+
+    private static long maxN() {
+        long n = (long) Math.sqrt(MappedStorage.MAX_SIZE / 9.125);
+        while (fileSize(n + 1) <= MappedStorage.MAX_SIZE) {
+            n++;
+        }
+        while (fileSize(n) > MappedStorage.MAX_SIZE) {
+            n--;
+        }
+        return n;
+    }
+
+    // Maps the backing file; a temporary file is deleted if that fails
+    private static MappedStorage openStorage(Path file, long size, boolean temporary) {
+        try {
+            return new MappedStorage(file, size);
+        } catch (RuntimeException e) {
+            if (temporary) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static Path createTempFile() {
+        try {
+            return Files.createTempFile("percolation", ".bin");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // opens the site (row, col) if it is not open already
+    public void open(long row, long col) {
+        validate(row, col);
+
+        long index = xyTo1D(row, col);
+        if (isOpenSite(index)) {
+            return;
+        }
+
+        long word = openBase + (index >>> 6) * Long.BYTES;
+        storage.putLong(word, storage.getLong(word) | (1L << index));
+        openSites++;
+
+        int flags = 0;
+        if (row == 1) {
+            flags |= Percolation.CONNECTED_TOP;
+        }
+        if (row == n) {
+            flags |= Percolation.CONNECTED_BOTTOM;
+        }
+
+        // Connect to open neighbors, collecting their component flags
+        if (row > 1 && isOpenSite(index - n)) {
+            flags |= union(index, index - n);
+        }
+        if (row < n && isOpenSite(index + n)) {
+            flags |= union(index, index + n);
+        }
+        if (col > 1 && isOpenSite(index - 1)) {
+            flags |= union(index, index - 1);
+        }
+        if (col < n && isOpenSite(index + 1)) {
+            flags |= union(index, index + 1);
+        }
+
+        long root = find(index);
+        int meta = meta(root) | flags;
+        setMeta(root, meta);
+        if ((meta & Percolation.CONNECTED_BOTH) == Percolation.CONNECTED_BOTH) {
+            percolates = true;
+        }
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(long row, long col) {
+        validate(row, col);
+        return isOpenSite(xyTo1D(row, col));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(long row, long col) {
+        validate(row, col);
+        long index = xyTo1D(row, col);
+        return isOpenSite(index) && (meta(find(index)) & Percolation.CONNECTED_TOP) != 0;
+    }
+
+    // returns the number of open sites
+    public long numberOfOpenSites() {
+        return openSites;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // flush the grid to its file (a temporary file is deleted instead) and close it
+    @Override
+    public void close() {
+        if (!deleteOnClose) {
+            storage.force();
+        }
+        storage.close();
+        if (deleteOnClose) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private boolean isOpenSite(long index) {
+        return (storage.getLong(openBase + (index >>> 6) * Long.BYTES) & (1L << index)) != 0;
+    }
+
+    private long parent(long p) {
+        long stored = storage.getLong(p * Long.BYTES);
+        return stored == 0 ? p : stored - 1;
+    }
+
+    private void setParent(long p, long parent) {
+        storage.putLong(p * Long.BYTES, parent + 1);
+    }
+
+    private int meta(long p) {
+        return storage.getByte(metaBase + p) & 0xFF;
+    }
+
+    private void setMeta(long p, int meta) {
+        storage.putByte(metaBase + p, (byte) meta);
+    }
+
+    // Find with path halving (iterative, so deep trees cannot overflow the stack)
+    private long find(long p) {
+        long q = parent(p);
+        while (q != p) {
+            long grand = parent(q);
+            if (grand != q) {
+                setParent(p, grand);
+            }
+            p = grand;
+            q = parent(p);
+        }
+        return p;
+    }
+
+    // Union by rank, returning the flags of q's component before the merge
+    private int union(long p, long q) {
+        long rootP = find(p);
+        long rootQ = find(q);
+        int metaP = meta(rootP);
+        int metaQ = meta(rootQ);
+        if (rootP == rootQ) {
+            return metaQ & Percolation.CONNECTED_BOTH;
+        }
+
+        int rankP = metaP >>> RANK_SHIFT;
+        int rankQ = metaQ >>> RANK_SHIFT;
+        int flags = (metaP | metaQ) & Percolation.CONNECTED_BOTH;
+        if (rankP < rankQ) {
+            setParent(rootP, rootQ);
+            setMeta(rootQ, (rankQ << RANK_SHIFT) | flags);
+        } else {
+            setParent(rootQ, rootP);
+            int rank = rankP == rankQ ? rankP + 1 : rankP;
+            setMeta(rootP, (rank << RANK_SHIFT) | flags);
+        }
+        return metaQ & Percolation.CONNECTED_BOTH;
+    }
+
+    private long xyTo1D(long row, long col) {
+        return (row - 1) * n + (col - 1);
+    }
+
+    private void validate(long row, long col) {
+        if (row < 1 || row > n || col < 1 || col > n) {
+            throw new IllegalArgumentException(
+                    "Index out of bounds: row=" + row + ", col=" + col + ", n=" + n);
+        }
+    }
+
+    // test client (optional)
+    public static void main(String[] args) {
+        System.out.println("Test 1: 3x3 grid");
+        try (LargePercolation perc = new LargePercolation(3)) {
+            perc.open(1, 1);
+            perc.open(2, 1);
+            perc.open(3, 3);
+            System.out.println("isFull(3,3) before connecting: " + perc.isFull(3, 3) + " (expected: false)");
+            perc.open(3, 1);
+            System.out.println("percolates: " + perc.percolates() + " (expected: true)");
+            System.out.println("isFull(3,3) after percolating: " + perc.isFull(3, 3) + " (expected: false, no backwash)");
+        }
+
+        // A grid past the int index range; only the touched pages hit the disk
+        System.out.println("\nTest 2: 50000x50000 grid (2.5 billion sites)");
+        try (LargePercolation perc = new LargePercolation(50_000)) {
+            for (long row = 1; row <= 50_000; row++) {
+                perc.open(row, 49_999);
+            }
+            System.out.println("percolates: " + perc.percolates() + " (expected: true)");
+            System.out.println("Open sites: " + perc.numberOfOpenSites());
+        }
+
+        System.out.println("\nTest 3: limits");
+        System.out.println("MAX_N = " + MAX_N);
+        try {
+            new LargePercolation(MAX_N + 1).close();
+            System.out.println("n = MAX_N + 1 accepted (expected: rejected)");
+        } catch (IllegalArgumentException e) {
+            System.out.println("n = MAX_N + 1 rejected (expected: rejected)");
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.princeton.partone.module2;
+
+/**
+ * A finite lattice for percolation: sites 0..N-1, a precomputed neighbor
+ * table in compressed form (the neighbors of site s are
+ * neighbors[start[s]] .. neighbors[start[s + 1] - 1]), the list of bonds
+ * (each undirected edge once), and which sites lie on the top and bottom
+ * boundaries that a spanning cluster has to connect.
+ *
+ * The table is built once, so the percolation inner loop is a plain scan
+ * over a flat int[] whatever the geometry.
+ */
+public final class Lattice {
+    static final byte TOP = 1;
+    static final byte BOTTOM = 2;
+
+    final int[] start;
+    final int[] neighbors;
+    final int[] bondFrom;
+    final int[] bondTo;
+    final byte[] boundary;
+    private final String name;
+
+    // Writes the neighbors of site into buffer, returning how many
+    private interface NeighborRule {
+        int neighbors(int site, int[] buffer);
+    }
+
+    private Lattice(String name, int sites, int maxDegree, NeighborRule rule, byte[] boundary) {
+        this.name = name;
+        this.boundary = boundary;
+        this.start = new int[sites + 1];
+
+        int[] buffer = new int[maxDegree];
+        for (int s = 0; s < sites; s++) {
+            start[s + 1] = start[s] + rule.neighbors(s, buffer);
+        }
+
+        this.neighbors = new int[start[sites]];
+        this.bondFrom = new int[neighbors.length / 2];
+        this.bondTo = new int[neighbors.length / 2];
+        int bond = 0;
+        for (int s = 0; s < sites; s++) {
+            int degree = rule.neighbors(s, buffer);
+            System.arraycopy(buffer, 0, neighbors, start[s], degree);
+            for (int i = 0; i < degree; i++) {
+                if (buffer[i] > s) {
+                    bondFrom[bond] = s;
+                    bondTo[bond] = buffer[i];
+                    bond++;
+                }
+            }
+        }
+    }
+
+    // n-by-n square lattice, 4 neighbors; top row to bottom row
+    public static Lattice square(int n) {
+        validate(n);
+        return new Lattice("square(" + n + ")", n * n, 4, (s, buffer) -> {
+            int row = s / n;
+            int col = s % n;
+            int d = 0;
+            if (row > 0) {
+                buffer[d++] = s - n;
+            }
+            if (row < n - 1) {
+                buffer[d++] = s + n;
+            }
+            if (col > 0) {
+                buffer[d++] = s - 1;
+            }
+            if (col < n - 1) {
+                buffer[d++] = s + 1;
+            }
+            return d;
+        }, rowBoundary(n, n));
+    }
+
+    /**
+     * n-by-n triangular lattice, 6 neighbors: the square lattice plus the
+     * diagonal from (row, col) to (row - 1, col + 1) and (row + 1, col - 1)
+     */
+    public static Lattice triangular(int n) {
+        validate(n);
+        return new Lattice("triangular(" + n + ")", n * n, 6, (s, buffer) -> {
+            int row = s / n;
+            int col = s % n;
+            int d = 0;
+            if (row > 0) {
+                buffer[d++] = s - n;
+            }
+            if (row < n - 1) {
+                buffer[d++] = s + n;
+            }
+            if (col > 0) {
+                buffer[d++] = s - 1;
+            }
+            if (col < n - 1) {
+                buffer[d++] = s + 1;
+            }
+            if (row > 0 && col < n - 1) {
+                buffer[d++] = s - n + 1;
+            }
+            if (row < n - 1 && col > 0) {
+                buffer[d++] = s + n - 1;
+            }
+            return d;
+        }, rowBoundary(n, n));
+    }
+
+    /**
+     * n-by-n honeycomb lattice in brick-wall form, 3 neighbors: left, right,
+     * and one vertical bond, down when (row + col) is even and up when odd
+     */
+    public static Lattice honeycomb(int n) {
+        validate(n);
+        return new Lattice("honeycomb(" + n + ")", n * n, 3, (s, buffer) -> {
+            int row = s / n;
+            int col = s % n;
+            int d = 0;
+            if (col > 0) {
+                buffer[d++] = s - 1;
+            }
+            if (col < n - 1) {
+                buffer[d++] = s + 1;
+            }
+            if ((row + col) % 2 == 0 && row < n - 1) {
+                buffer[d++] = s + n;
+            } else if ((row + col) % 2 != 0 && row > 0) {
+                buffer[d++] = s - n;
+            }
+            return d;
+        }, rowBoundary(n, n));
+    }
+
+    // n-by-n-by-n simple cubic lattice, 6 neighbors; top layer to bottom layer
+    public static Lattice cubic(int n) {
+        validate(n);
+        if ((long) n * n * n > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("n^3 must fit in an int");
+        }
+        int layer = n * n;
+        return new Lattice("cubic(" + n + ")", layer * n, 6, (s, buffer) -> {
+            int z = s / layer;
+            int row = (s % layer) / n;
+            int col = s % n;
+            int d = 0;
+            if (z > 0) {
+                buffer[d++] = s - layer;
+            }
+            if (z < n - 1) {
+                buffer[d++] = s + layer;
+            }
+            if (row > 0) {
+                buffer[d++] = s - n;
+            }
+            if (row < n - 1) {
+                buffer[d++] = s + n;
+            }
+            if (col > 0) {
+                buffer[d++] = s - 1;
+            }
+            if (col < n - 1) {
+                buffer[d++] = s + 1;
+            }
+            return d;
+        }, rowBoundary(n, layer));
+    }
+
+    // First `width` sites are the top boundary, last `width` the bottom
+    private static byte[] rowBoundary(int rows, int width) {
+        byte[] boundary = new byte[rows * width];
+        for (int i = 0; i < width; i++) {
+            boundary[i] |= TOP;
+            boundary[boundary.length - 1 - i] |= BOTTOM;
+        }
+        return boundary;
+    }
+
+    private static void validate(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be greater than 0");
+        }
+    }
+
+    public int sites() {
+        return boundary.length;
+    }
+
+    public int bonds() {
+        return bondFrom.length;
+    }
+
+    public int degree(int site) {
+        return start[site + 1] - start[site];
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,225 @@
+package com.princeton.partone.module2;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+/**
+ * Percolation on any Lattice, as site or bond percolation.
+ *
+ * Uses the same scheme as Percolation (one union-find, top/bottom flags
+ * on each root, open sites as packed bits), but walks the lattice's
+ * precomputed neighbor table instead of four inline checks, so one engine
+ * covers square, triangular, honeycomb and cubic geometries.
+ *
+ *   SITE: sites start blocked; open(site) joins it to its open neighbors
+ *   BOND: every site is present; openBond(bond) joins the bond's two ends
+ */
+public class LatticePercolation {
+    public enum Mode { SITE, BOND }
+
+    private static final byte CONNECTED_BOTH = Lattice.TOP | Lattice.BOTTOM;
+
+    private final Lattice lattice;
+    private final Mode mode;
+    private final DynamicConnectivity uf;
+    private final long[] openBits;  // sites in SITE mode, bonds in BOND mode
+    private final byte[] status;    // only meaningful at component roots
+    private int opened;
+    private boolean percolates;
+
+    public LatticePercolation(Lattice lattice, Mode mode) {
+        this(lattice, mode, UnionFind::new);
+    }
+
+    public LatticePercolation(Lattice lattice, Mode mode,
+                              IntFunction<? extends DynamicConnectivity> unionFind) {
+        this.lattice = lattice;
+        this.mode = mode;
+        this.uf = unionFind.apply(lattice.sites());
+        int elements = mode == Mode.SITE ? lattice.sites() : lattice.bonds();
+        this.openBits = new long[(elements + 63) >>> 6];
+        this.status = new byte[lattice.sites()];
+        reset();
+    }
+
+    // everything blocked again, reusing all arrays
+    public void reset() {
+        Arrays.fill(openBits, 0L);
+        uf.reset();
+        opened = 0;
+        percolates = false;
+
+        if (mode == Mode.SITE) {
+            Arrays.fill(status, (byte) 0);
+        } else {
+            // In bond percolation every site is present from the start
+            System.arraycopy(lattice.boundary, 0, status, 0, status.length);
+            for (byte b : status) {
+                if (b == CONNECTED_BOTH) {
+                    percolates = true;  // a one-site-high lattice spans trivially
+                }
+            }
+        }
+    }
+
+    // opens the site if it is not open already (SITE mode)
+    public void open(int site) {
+        requireMode(Mode.SITE);
+        validate(site, lattice.sites());
+        if (isSet(site)) {
+            return;
+        }
+
+        set(site);
+        opened++;
+
+        byte flags = lattice.boundary[site];
+        int[] neighbors = lattice.neighbors;
+        for (int i = lattice.start[site], end = lattice.start[site + 1]; i < end; i++) {
+            int neighbor = neighbors[i];
+            if (isSet(neighbor)) {
+                flags |= connect(site, neighbor);
+            }
+        }
+        mark(site, flags);
+    }
+
+    // opens the bond if it is not open already (BOND mode)
+    public void openBond(int bond) {
+        requireMode(Mode.BOND);
+        validate(bond, lattice.bonds());
+        if (isSet(bond)) {
+            return;
+        }
+
+        set(bond);
+        opened++;
+
+        int from = lattice.bondFrom[bond];
+        byte flags = (byte) (status[uf.find(from)] | connect(from, lattice.bondTo[bond]));
+        mark(from, flags);
+    }
+
+    // is the site open (SITE mode), or the bond open (BOND mode)?
+    public boolean isOpen(int element) {
+        validate(element, mode == Mode.SITE ? lattice.sites() : lattice.bonds());
+        return isSet(element);
+    }
+
+    // is the site connected to the top boundary?
+    public boolean isFull(int site) {
+        validate(site, lattice.sites());
+        if (mode == Mode.SITE && !isSet(site)) {
+            return false;
+        }
+        return (status[uf.find(site)] & Lattice.TOP) != 0;
+    }
+
+    // number of open sites (SITE mode) or open bonds (BOND mode)
+    public int numberOfOpen() {
+        return opened;
+    }
+
+    // does some cluster connect the top and bottom boundaries?
+    public boolean percolates() {
+        return percolates;
+    }
+
+    public Lattice lattice() {
+        return lattice;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    // Union site with its neighbor, returning the neighbor component's flags
+    private byte connect(int site, int neighbor) {
+        byte flags = status[uf.find(neighbor)];
+        uf.union(site, neighbor);
+        return flags;
+    }
+
+    // Store the merged flags on site's (possibly new) root
+    private void mark(int site, byte flags) {
+        int root = uf.find(site);
+        status[root] |= flags;
+        if ((status[root] & CONNECTED_BOTH) == CONNECTED_BOTH) {
+            percolates = true;
+        }
+    }
+
+    private boolean isSet(int i) {
+        return (openBits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private void set(int i) {
+        openBits[i >>> 6] |= 1L << i;
+    }
+
+    private void requireMode(Mode required) {
+        if (mode != required) {
+            throw new UnsupportedOperationException("Not available in " + mode + " mode");
+        }
+    }
+
+    private static void validate(int i, int size) {
+        if (i < 0 || i >= size) {
+            throw new IllegalArgumentException("Index out of bounds: " + i + ", size=" + size);
+        }
+    }
+
+    /**
+     * Open sites (or bonds) in random order until the lattice percolates,
+     * returning the fraction opened. The permutation array is reused across
+     * calls, so repeated trials allocate nothing.
+     */
+    public double trial(int[] order, SplittableRandom random) {
+        reset();
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        for (int i = 0; i < order.length && !percolates; i++) {
+            if (mode == Mode.SITE) {
+                open(order[i]);
+            } else {
+                openBond(order[i]);
+            }
+        }
+        return (double) opened / order.length;
+    }
+
+    // test client: estimate thresholds on each geometry
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int n3 = Math.max(2, (int) Math.cbrt((double) n * n));
+
+        Lattice[] lattices = {Lattice.square(n), Lattice.triangular(n), Lattice.honeycomb(n), Lattice.cubic(n3)};
+        // Infinite-lattice thresholds for comparison: {site, bond}
+        double[][] known = {{0.5927, 0.5}, {0.5, 0.3473}, {0.6970, 0.6527}, {0.3116, 0.2488}};
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int l = 0; l < lattices.length; l++) {
+            for (Mode mode : Mode.values()) {
+                LatticePercolation perc = new LatticePercolation(lattices[l], mode);
+                int[] order = new int[mode == Mode.SITE ? lattices[l].sites() : lattices[l].bonds()];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                }
+
+                RunningStats stats = new RunningStats();
+                for (int t = 0; t < trials; t++) {
+                    stats.add(perc.trial(order, random));
+                }
+                System.out.printf("%-16s %-4s threshold ~ %.4f (infinite lattice: %.4f)%n",
+                        lattices[l], mode, stats.mean(), known[l][mode.ordinal()]);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.princeton.partone.module2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A byte region of a file, memory-mapped in 1 GiB chunks so it can be
+ * addressed with long offsets beyond the 2 GiB limit of a single buffer.
+ * The file is created sparse, so untouched pages read as zero and cost
+ * neither disk nor heap. A chunk is mapped the first time it is touched.
+ *
+ * Each chunk is one kernel mapping, and Linux allows 65530 per process by
+ * default (vm.max_map_count), shared with the JVM's own. So the region is
+ * capped at MAX_CHUNKS chunks, 32 TiB, which also bounds the chunk table
+ * at 256 KiB of heap.
+ *
+ * Java cannot unmap a buffer explicitly: close() drops the chunks, and the
+ * mappings go when the garbage collector reclaims them.
+ */
+class MappedStorage implements AutoCloseable {
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+    // Half the default vm.max_map_count, leaving the rest to the JVM
+    static final int MAX_CHUNKS = 32768;
+    static final long MAX_SIZE = (long) MAX_CHUNKS << CHUNK_SHIFT;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;  // null until first touched
+    private final long size;
+    private final Path file;
+
+    public MappedStorage(Path file, long size) {
+        if (size <= 0 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("size must be in [1, " + MAX_SIZE + "]: " + size);
+        }
+
+        this.size = size;
+        this.file = file;
+        this.chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT)];
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map " + file, e);
+        }
+        try {
+            if (channel.size() < size) {
+                // Extend to full length now; the gap stays sparse
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Cannot map " + file, e);
+        }
+    }
+
+    // The chunk holding offset, mapped on first use
+    private MappedByteBuffer chunk(long offset) {
+        int i = (int) (offset >>> CHUNK_SHIFT);
+        MappedByteBuffer chunk = chunks[i];
+        if (chunk == null) {
+            long start = (long) i << CHUNK_SHIFT;
+            try {
+                chunk = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(CHUNK_SIZE, size - start));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map " + file + " at offset " + start, e);
+            }
+            chunks[i] = chunk;
+        }
+        return chunk;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public byte getByte(long offset) {
+        return chunk(offset).get((int) (offset & CHUNK_MASK));
+    }
+
+    public void putByte(long offset, byte value) {
+        chunk(offset).put((int) (offset & CHUNK_MASK), value);
+    }
+
+    // Longs must be 8-byte aligned so they never straddle two chunks
+    public long getLong(long offset) {
+        return chunk(offset).getLong((int) (offset & CHUNK_MASK));
+    }
+
+    public void putLong(long offset, long value) {
+        chunk(offset).putLong((int) (offset & CHUNK_MASK), value);
+    }
+
+    // Flush dirty pages to the file
+    public void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Arrays.fill(chunks, null);  // unreachable buffers are unmapped by the GC
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.princeton.partone.module2;
+
+/**
+ * Union by rank with path splitting: every node on the find path is
+ * pointed at its grandparent, in a single pass.
+ * find/union: O(α(n)) amortized
+ */
+public class PathSplittingUF implements DynamicConnectivity {
+    private final int[] parent;
+    private final byte[] rank;  // see UnionByRank
+    private int count;
+
+    public PathSplittingUF(int n) {
+        parent = new int[n];
+        rank = new byte[n];
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        count = parent.length;
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+            rank[i] = 0;
+        }
+    }
+
+    @Override
+    public int find(int p) {
+        while (p != parent[p]) {
+            int next = parent[p];
+            parent[p] = parent[next];  // path splitting
+            p = next;
+        }
+        return p;
+    }
+
+    @Override
+    public boolean union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return false;
+        }
+
+        UnionByRank.link(parent, rank, rootP, rootQ);
+        count--;
+        return true;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+}
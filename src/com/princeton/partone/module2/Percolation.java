@@ -1,98 +1,218 @@
 package com.princeton.partone.module2;
 
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntFunction;
 
 public class Percolation {
-    private final boolean[][] grid;
+    // Per-root flags: does the component touch the top row / the bottom row?
+    // Shared by the other grids in this package that keep the same flags.
+    static final byte CONNECTED_TOP = 1;
+    static final byte CONNECTED_BOTTOM = 2;
+    static final byte CONNECTED_BOTH = CONNECTED_TOP | CONNECTED_BOTTOM;
+    // Snapshot file: "PSNP", format version
+    private static final int SNAPSHOT_MAGIC = 0x50534E50;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_BYTES = 24;
+    private static final int SNAPSHOT_PERCOLATES = 1;
+    private static final int SNAPSHOT_UNION_FIND = 2;
+    // Arrays are mapped in windows of at most this many bytes
+    private static final long SNAPSHOT_WINDOW = 1L << 30;
+
+    private final long[] openBits; // open state, one bit per site, indexed by xyTo1D
     private final int n;
-    private final WeightedQuickUnionUF uf;
-    private final WeightedQuickUnionUF ufFull; // To avoid backwash
+    private final DynamicConnectivity uf;
+    private final byte[] status; // only meaningful at component roots
+    private final ClusterStats clusters; // null unless cluster tracking is on
     private int openSites;
-    private final int virtualTop;
-    private final int virtualBottom;
+    private boolean percolates;
 
     // creates n-by-n grid, with all sites initially blocked
     public Percolation(int n) {
+        this(n, UnionFind::new);
+    }
+
+    // same, with the union-find over the n*n sites built by the given factory
+    public Percolation(int n, IntFunction<? extends DynamicConnectivity> unionFind) {
+        this(n, unionFind, false);
+    }
+
+    /**
+     * same, optionally tracking cluster statistics (size histogram, largest
+     * cluster, number of clusters) as sites open; costs ~12 more bytes per site
+     */
+    public Percolation(int n, IntFunction<? extends DynamicConnectivity> unionFind,
+                       boolean trackClusters) {
         if (n <= 0) {
             throw new IllegalArgumentException("n must be greater than 0");
         }
 
         this.n = n;
-        this.grid = new boolean[n][n];
+        this.openBits = new long[(n * n + 63) >>> 6];
         this.openSites = 0;
 
-        // Create UF with n*n sites plus 2 virtual sites (top and bottom)
-        this.virtualTop = n * n;
-        this.virtualBottom = n * n + 1;
-        this.uf = new WeightedQuickUnionUF(n * n + 2);
-        this.ufFull = new WeightedQuickUnionUF(n * n + 1); // No virtual bottom to avoid backwash
+        // A single UF with no virtual sites: instead of a virtual top and
+        // bottom, each root records which boundary rows its component touches.
+        // This avoids backwash without needing a second UF.
+        this.uf = unionFind.apply(n * n);
+        this.status = new byte[n * n];
+        this.clusters = trackClusters ? new ClusterStats(n * n) : null;
+        this.percolates = false;
+    }
+
+    // blocks every site again, reusing all arrays so trials can share one instance
+    public void reset() {
+        Arrays.fill(openBits, 0L);
+        Arrays.fill(status, (byte) 0);
+        uf.reset();
+        if (clusters != null) {
+            clusters.reset();
+        }
+        openSites = 0;
+        percolates = false;
     }
 
     // opens the site (row, col) if it is not open already
     public void open(int row, int col) {
         validate(row, col);
+        openSite(xyTo1D(row, col), row, col);
+    }
 
-        if (isOpen(row, col)) {
+    /**
+     * Opens the sites sites[from..to-1], given as 0-based linear indices
+     * (row - 1) * n + (col - 1). The batch is validated once up front, so
+     * nothing is opened if any index is out of range. Returns the position
+     * in sites of the open that made the system percolate, or -1 if it did
+     * not start percolating within this batch.
+     */
+    public int openAll(int[] sites, int from, int to) {
+        if (from < 0 || to > sites.length || from > to) {
+            throw new IllegalArgumentException(
+                    "Invalid range [" + from + ", " + to + ") for " + sites.length + " sites");
+        }
+        int limit = n * n;
+        for (int i = from; i < to; i++) {
+            if (sites[i] < 0 || sites[i] >= limit) {
+                throw new IllegalArgumentException(
+                        "Site index out of bounds: " + sites[i] + " at position " + i + ", n=" + n);
+            }
+        }
+
+        int percolatedAt = -1;
+        int i = from;
+        if (!percolates) {
+            for (; i < to; i++) {
+                int index = sites[i];
+                openSite(index, index / n + 1, index % n + 1);
+                if (percolates) {
+                    percolatedAt = i++;
+                    break;
+                }
+            }
+        }
+        for (; i < to; i++) {
+            int index = sites[i];
+            openSite(index, index / n + 1, index % n + 1);
+        }
+        return percolatedAt;
+    }
+
+    // Unchecked open of the site at index, which is (row, col)
+    private void openSite(int index, int row, int col) {
+        if (isOpenSite(index)) {
             return;
         }
 
         // Open the site
-        grid[row - 1][col - 1] = true;
+        openBits[index >>> 6] |= 1L << index;
         openSites++;
+        if (UnionFindMetrics.ENABLED) {
+            UnionFindMetrics.recordOpen();
+        }
+        if (clusters != null) {
+            clusters.open(index);
+        }
 
-        int index = xyTo1D(row, col);
+        byte flags = 0;
 
-        // Connect to virtual top if in top row
+        // Boundary rows touch the top / bottom directly
         if (row == 1) {
-            uf.union(index, virtualTop);
-            ufFull.union(index, virtualTop);
+            flags |= CONNECTED_TOP;
         }
-
-        // Connect to virtual bottom if in bottom row
         if (row == n) {
-            uf.union(index, virtualBottom);
+            flags |= CONNECTED_BOTTOM;
         }
 
-        // Connect to open neighbors
+        // Connect to open neighbors, collecting their component flags.
+        // Neighbors are already known to be in range, so use the unchecked lookup.
         // Top neighbor
-        if (row > 1 && isOpen(row - 1, col)) {
-            uf.union(index, xyTo1D(row - 1, col));
-            ufFull.union(index, xyTo1D(row - 1, col));
+        if (row > 1 && isOpenSite(index - n)) {
+            flags |= connect(index, index - n);
         }
 
         // Bottom neighbor
-        if (row < n && isOpen(row + 1, col)) {
-            uf.union(index, xyTo1D(row + 1, col));
-            ufFull.union(index, xyTo1D(row + 1, col));
+        if (row < n && isOpenSite(index + n)) {
+            flags |= connect(index, index + n);
         }
 
         // Left neighbor
-        if (col > 1 && isOpen(row, col - 1)) {
-            uf.union(index, xyTo1D(row, col - 1));
-            ufFull.union(index, xyTo1D(row, col - 1));
+        if (col > 1 && isOpenSite(index - 1)) {
+            flags |= connect(index, index - 1);
         }
 
         // Right neighbor
-        if (col < n && isOpen(row, col + 1)) {
-            uf.union(index, xyTo1D(row, col + 1));
-            ufFull.union(index, xyTo1D(row, col + 1));
+        if (col < n && isOpenSite(index + 1)) {
+            flags |= connect(index, index + 1);
         }
+
+        // Store the merged flags on the (possibly new) root
+        int root = uf.find(index);
+        status[root] |= flags;
+        if ((status[root] & CONNECTED_BOTH) == CONNECTED_BOTH) {
+            percolates = true;
+        }
+    }
+
+    // Union site with its neighbor, returning the neighbor component's flags
+    private byte connect(int site, int neighbor) {
+        int neighborRoot = uf.find(neighbor);
+        byte flags = status[neighborRoot];
+        if (clusters == null) {
+            uf.union(site, neighbor);
+        } else {
+            int siteRoot = uf.find(site);
+            if (uf.union(site, neighbor)) {
+                clusters.merge(siteRoot, neighborRoot, uf.find(site));
+            }
+        }
+        return flags;
     }
 
     // is the site (row, col) open?
     public boolean isOpen(int row, int col) {
         validate(row, col);
-        return grid[row - 1][col - 1];
+        return isOpenSite(xyTo1D(row, col));
+    }
+
+    // Unchecked lookup by 1D index; callers must guarantee 0 <= index < n*n
+    private boolean isOpenSite(int index) {
+        return (openBits[index >>> 6] & (1L << index)) != 0;
     }
 
     // is the site (row, col) full?
     public boolean isFull(int row, int col) {
         validate(row, col);
-        if (!isOpen(row, col)) {
+        int index = xyTo1D(row, col);
+        if (!isOpenSite(index)) {
             return false;
         }
-        // Use ufFull to avoid backwash problem
-        return ufFull.find(xyTo1D(row, col)) == ufFull.find(virtualTop);
+        // Only components that touch the top row are full, so no backwash
+        return (status[uf.find(index)] & CONNECTED_TOP) != 0;
     }
 
     // returns the number of open sites
@@ -100,9 +220,293 @@ public class Percolation {
         return openSites;
     }
 
+    // number of clusters of open sites; O(1)
+    public int numberOfClusters() {
+        return clusterStats().clusters();
+    }
+
+    // size of the largest cluster; O(1)
+    public int largestCluster() {
+        return clusterStats().largest();
+    }
+
+    // size of the cluster containing the open site (row, col), 0 if blocked
+    public int clusterSize(int row, int col) {
+        validate(row, col);
+        int index = xyTo1D(row, col);
+        return isOpenSite(index) ? clusterStats().sizeOf(uf.find(index)) : 0;
+    }
+
+    // number of clusters with exactly size sites; O(1)
+    public int clustersOfSize(int size) {
+        return clusterStats().clustersOfSize(size);
+    }
+
+    // the distinct cluster sizes present, unordered; O(distinct sizes)
+    public int[] clusterSizes() {
+        return clusterStats().distinctSizes();
+    }
+
+    // mean size of the cluster containing a random open site, sum(s^2) / sum(s); O(1)
+    public double meanClusterSize() {
+        return openSites == 0 ? 0.0 : (double) clusterStats().sumOfSquares() / openSites;
+    }
+
+    private ClusterStats clusterStats() {
+        if (clusters == null) {
+            throw new UnsupportedOperationException("Cluster tracking is not enabled");
+        }
+        return clusters;
+    }
+
     // does the system percolate?
     public boolean percolates() {
-        return uf.find(virtualTop) == uf.find(virtualBottom);
+        return percolates;
+    }
+
+    /**
+     * Writes a snapshot: a 24-byte header (magic, version, n, open sites,
+     * flags, components) and the open bitset, n*n/8 bytes. With the default
+     * UnionFind the union-find state follows (status bytes, then the parent
+     * and size ints, ~9 bytes per site), so load() can restore it directly;
+     * other strategies store only the bitset and are rebuilt from it.
+     */
+    public void save(Path file) {
+        UnionFind state = uf instanceof UnionFind ? (UnionFind) uf : null;
+        int flags = (percolates ? SNAPSHOT_PERCOLATES : 0) | (state != null ? SNAPSHOT_UNION_FIND : 0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, SNAPSHOT_HEADER_BYTES);
+            header.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(n).putInt(openSites)
+                    .putInt(flags).putInt(uf.count());
+            header.force();
+
+            long position = mapWindows(channel, FileChannel.MapMode.READ_WRITE, SNAPSHOT_HEADER_BYTES,
+                    openBits.length, Long.BYTES, (window, from, count) -> window.asLongBuffer().put(openBits, from, count));
+            if (state != null) {
+                int[] parent = state.parents();
+                int[] size = state.sizes();
+                position = mapWindows(channel, FileChannel.MapMode.READ_WRITE, position, status.length, 1,
+                        (window, from, count) -> window.put(status, from, count));
+                position = mapWindows(channel, FileChannel.MapMode.READ_WRITE, position, parent.length, Integer.BYTES,
+                        (window, from, count) -> window.asIntBuffer().put(parent, from, count));
+                mapWindows(channel, FileChannel.MapMode.READ_WRITE, position, size.length, Integer.BYTES,
+                        (window, from, count) -> window.asIntBuffer().put(size, from, count));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write snapshot " + file, e);
+        }
+    }
+
+    // restores a snapshot written by save()
+    public static Percolation load(Path file) {
+        return load(file, UnionFind::new, false);
+    }
+
+    /**
+     * Restores a snapshot with the given union-find and cluster tracking.
+     * The header is checked before anything is allocated, and the bitset is
+     * mapped and bulk-copied in. If the snapshot holds UnionFind state and
+     * the grid uses a UnionFind without cluster tracking, that state is
+     * checked against the bitset and copied straight into its arrays, O(n^2)
+     * work with no unions; state that fails the checks is rebuilt instead.
+     * Otherwise connectivity is rebuilt in one pass over the open sites.
+     */
+    public static Percolation load(Path file, IntFunction<? extends DynamicConnectivity> unionFind,
+                                   boolean trackClusters) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < SNAPSHOT_HEADER_BYTES) {
+                throw new IllegalArgumentException("Not a Percolation snapshot: " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SNAPSHOT_HEADER_BYTES);
+            if (header.getInt() != SNAPSHOT_MAGIC || header.getInt() != SNAPSHOT_VERSION) {
+                throw new IllegalArgumentException("Not a Percolation snapshot: " + file);
+            }
+            int n = header.getInt();
+            int openSites = header.getInt();
+            int flags = header.getInt();
+            int components = header.getInt();
+            if (n <= 0 || (long) n * n > Integer.MAX_VALUE || openSites < 0 || openSites > n * n) {
+                throw new IllegalArgumentException("Corrupt Percolation snapshot header: " + file
+                        + " (n=" + n + ", open sites=" + openSites + ")");
+            }
+
+            int sites = n * n;
+            int words = (sites + 63) >>> 6;
+            long position = SNAPSHOT_HEADER_BYTES;
+            long expected = position + (long) words * Long.BYTES
+                    + ((flags & SNAPSHOT_UNION_FIND) != 0 ? 9L * sites : 0);
+            if (fileSize != expected) {
+                throw new IllegalArgumentException("Truncated Percolation snapshot: " + file);
+            }
+
+            Percolation perc = new Percolation(n, unionFind, trackClusters);
+            long[] bits = new long[words];
+            position = mapWindows(channel, FileChannel.MapMode.READ_ONLY, position, words, Long.BYTES,
+                    (window, from, count) -> window.asLongBuffer().get(bits, from, count));
+            if ((sites & 63) != 0 && bits[words - 1] >>> (sites & 63) != 0) {
+                throw new IllegalArgumentException("Corrupt Percolation snapshot: open bit past the grid in " + file);
+            }
+
+            if ((flags & SNAPSHOT_UNION_FIND) != 0 && perc.uf instanceof UnionFind && !trackClusters) {
+                if (restore(perc, (UnionFind) perc.uf, channel, position, bits, openSites, flags, components)) {
+                    return perc;
+                }
+                // Saved state is inconsistent; forget it and rebuild from the bitset
+                perc.uf.reset();
+                Arrays.fill(perc.status, (byte) 0);
+            }
+
+            // Fallback: replay the open sites through union
+            for (int word = 0; word < bits.length; word++) {
+                for (long w = bits[word]; w != 0; w &= w - 1) {
+                    int index = (word << 6) + Long.numberOfTrailingZeros(w);
+                    perc.openSite(index, index / n + 1, index % n + 1);
+                }
+            }
+            if (perc.openSites != openSites) {
+                throw new IllegalArgumentException("Corrupt Percolation snapshot: " + file);
+            }
+            return perc;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Copies saved UnionFind state into perc, starting at position in the
+     * file, and checks it against the bitset before accepting it: every
+     * parent chain must end at a root (no cycles), each root's size must be
+     * its member count, blocked sites must be lone roots, and each open
+     * root's flags must say which boundary rows its members touch. Accepted
+     * chains are flattened, so no find() recurses deeply. Returns false,
+     * leaving perc's union-find to be reset, if any check fails. O(n^2).
+     */
+    private static boolean restore(Percolation perc, UnionFind state, FileChannel channel, long position,
+                                   long[] bits, int openSites, int flags, int components) throws IOException {
+        int[] parent = state.parents();
+        int[] size = state.sizes();
+        byte[] status = perc.status;
+        position = mapWindows(channel, FileChannel.MapMode.READ_ONLY, position, status.length, 1,
+                (window, from, count) -> window.get(status, from, count));
+        position = mapWindows(channel, FileChannel.MapMode.READ_ONLY, position, parent.length, Integer.BYTES,
+                (window, from, count) -> window.asIntBuffer().get(parent, from, count));
+        mapWindows(channel, FileChannel.MapMode.READ_ONLY, position, size.length, Integer.BYTES,
+                (window, from, count) -> window.asIntBuffer().get(size, from, count));
+
+        int sites = parent.length;
+        for (int i = 0; i < sites; i++) {
+            if (parent[i] < 0 || parent[i] >= sites) {
+                return false;
+            }
+        }
+
+        // Find each site's root iteratively. mark[i] is root + 1 once known,
+        // -(start + 1) while i is on the chain being walked from start.
+        int[] mark = new int[sites];
+        for (int start = 0; start < sites; start++) {
+            int x = start;
+            while (mark[x] == 0 && parent[x] != x) {
+                mark[x] = -(start + 1);
+                x = parent[x];
+            }
+            int root;
+            if (mark[x] > 0) {
+                root = mark[x] - 1;
+            } else if (mark[x] == 0) {
+                root = x;
+            } else {
+                return false;  // back on this walk's own chain: a cycle
+            }
+            mark[x] = root + 1;
+            for (int y = start; y != x; y = parent[y]) {
+                mark[y] = root + 1;
+            }
+        }
+        for (int i = 0; i < sites; i++) {
+            parent[i] = mark[i] - 1;
+        }
+
+        // Member counts per root, and the boundary rows each open root's members touch
+        // (in status bits 4 and 8, above the saved flags, until compared)
+        Arrays.fill(mark, 0);
+        int n = perc.n;
+        int open = 0;
+        for (int i = 0; i < sites; i++) {
+            int root = parent[i];
+            mark[root]++;
+            if (isSet(bits, i)) {
+                open++;
+                if (!isSet(bits, root)) {
+                    return false;
+                }
+                if (i < n) {
+                    status[root] |= CONNECTED_TOP << 2;
+                }
+                if (i >= sites - n) {
+                    status[root] |= CONNECTED_BOTTOM << 2;
+                }
+            }
+        }
+
+        int roots = 0;
+        boolean percolates = false;
+        for (int i = 0; i < sites; i++) {
+            if (parent[i] != i) {
+                continue;
+            }
+            roots++;
+            if (size[i] != mark[i]) {
+                return false;
+            }
+            if (!isSet(bits, i)) {
+                if (mark[i] != 1 || status[i] != 0) {
+                    return false;
+                }
+                continue;
+            }
+            byte touches = (byte) (status[i] >> 2);
+            if (status[i] != (byte) (touches << 2 | touches)) {
+                return false;
+            }
+            status[i] = touches;
+            percolates |= touches == CONNECTED_BOTH;
+        }
+        if (open != openSites || roots != components || percolates != ((flags & SNAPSHOT_PERCOLATES) != 0)) {
+            return false;
+        }
+
+        System.arraycopy(bits, 0, perc.openBits, 0, bits.length);
+        state.restoreCount(components);
+        perc.openSites = openSites;
+        perc.percolates = percolates;
+        return true;
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Receives one mapped window holding elements [from, from + count) of an array
+    private interface Window {
+        void accept(MappedByteBuffer window, int from, int count);
+    }
+
+    // Maps length elements of elementBytes each from position in windows; returns the position after them
+    private static long mapWindows(FileChannel channel, FileChannel.MapMode mode, long position, int length,
+                                   int elementBytes, Window action) throws IOException {
+        int perWindow = (int) (SNAPSHOT_WINDOW / elementBytes);
+        for (int from = 0; from < length; from += perWindow) {
+            int count = Math.min(perWindow, length - from);
+            MappedByteBuffer window = channel.map(mode, position + (long) from * elementBytes,
+                    (long) count * elementBytes);
+            action.accept(window, from, count);
+            if (mode == FileChannel.MapMode.READ_WRITE) {
+                window.force();
+            }
+        }
+        return position + (long) length * elementBytes;
     }
 
     // Convert 2D coordinates to 1D index
@@ -157,5 +561,26 @@ public class Percolation {
         System.out.println("Open sites after first open: " + perc4.numberOfOpenSites());
         perc4.open(1, 1);
         System.out.println("Open sites after second open: " + perc4.numberOfOpenSites());
+
+        // Test case 4: Cluster statistics
+        System.out.println("\nTest 4: Cluster statistics on a 4x4 grid");
+        Percolation perc5 = new Percolation(4, UnionFind::new, true);
+        perc5.open(1, 1);
+        perc5.open(1, 2);
+        perc5.open(2, 2);
+        perc5.open(4, 4);
+        perc5.open(3, 4);
+        perc5.open(4, 1);
+        System.out.println("Clusters: " + perc5.numberOfClusters() + " (expected: 3)");
+        System.out.println("Largest cluster: " + perc5.largestCluster() + " (expected: 3)");
+        System.out.println("Clusters of size 2: " + perc5.clustersOfSize(2) + " (expected: 1)");
+        System.out.println("Mean cluster size: " + perc5.meanClusterSize() + " (expected: 14/6 = 2.33)");
+
+        // Test case 5: Batch open by linear index
+        System.out.println("\nTest 5: openAll on a 3x3 grid");
+        Percolation perc6 = new Percolation(3);
+        int[] batch = {0, 4, 3, 6, 8};  // (1,1), (2,2), (2,1), (3,1), (3,3)
+        System.out.println("Percolated at position: " + perc6.openAll(batch, 0, batch.length) + " (expected: 3)");
+        System.out.println("Open sites: " + perc6.numberOfOpenSites() + " (expected: 5)");
     }
 }
\ No newline at end of file
@@ -1,77 +1,545 @@
 package com.princeton.partone.module2;
 
 import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
 
 public class PercolationStats {
-    private static final double CONFIDENCE_95 = 1.96;
-    private final double[] thresholds;
-    private final int trials;
-    private double meanValue;
-    private double stddevValue;
+    // Fewest trials the adaptive mode trusts the normal approximation with
+    private static final int MIN_ADAPTIVE_TRIALS = 30;
+    // Checkpoint file: "PSCK"
+    private static final int CHECKPOINT_MAGIC = 0x5053434B;
+    // Shard file: "PSHD"
+    private static final int SHARD_MAGIC = 0x50534844;
+    private final RunningStats stats;
 
     // perform independent trials on an n-by-n grid
     public PercolationStats(int n, int trials) {
+        this(n, trials, UnionFind::new);
+    }
+
+    // same sequential trials, on a grid whose union-find the factory builds (e.g. a UnionFindStrategy)
+    public PercolationStats(int n, int trials, IntFunction<? extends DynamicConnectivity> unionFind) {
         if (n <= 0 || trials <= 0) {
             throw new IllegalArgumentException(
                     "Both n and trials must be greater than 0");
         }
 
-        this.trials = trials;
-        this.thresholds = new double[trials];
+        this.stats = new RunningStats();
 
-        // Run trials
+        // Run trials, reusing one grid
+        Percolation perc = new Percolation(n, unionFind);
         for (int i = 0; i < trials; i++) {
-            Percolation perc = new Percolation(n);
+            perc.reset();
+
+            // Fold this trial's threshold into the statistics
+            stats.add(trial(perc, n, bound -> StdRandom.uniformInt(0, bound)));
+        }
+    }
+
+    /**
+     * Perform independent trials on an n-by-n grid using the given number of
+     * worker threads. Trials are split into fixed blocks, and each block draws
+     * from its own SplittableRandom stream, split off the master seed in block
+     * order. So for a given seed the results are identical whatever the thread
+     * count, and no worker touches the shared StdRandom state.
+     */
+    public PercolationStats(int n, int trials, long seed, int threads) {
+        this(n, trials, seed, threads, UnionFind::new);
+    }
+
+    // seeded run as above, each worker's grid using the union-find unionFind builds
+    public PercolationStats(int n, int trials, long seed, int threads,
+                            IntFunction<? extends DynamicConnectivity> unionFind) {
+        if (n <= 0 || trials <= 0 || threads <= 0) {
+            throw new IllegalArgumentException(
+                    "n, trials and threads must be greater than 0");
+        }
+
+        this.stats = run(n, Double.NaN, trials, seed, threads, unionFind, null, null);
+    }
+
+    /**
+     * As the seeded constructor, checkpointing to the given file after every
+     * round. If the file holds a checkpoint of the same run (same n, trials
+     * and seed) the run resumes from it, so a killed job loses at most one
+     * round, and the final result is identical to an uninterrupted run.
+     */
+    public PercolationStats(int n, int trials, long seed, int threads, Path checkpoint) {
+        this(n, trials, seed, threads, UnionFind::new, checkpoint);
+    }
 
-            // Randomly open sites until system percolates
-            while (!perc.percolates()) {
-                int row = StdRandom.uniformInt(1, n + 1);
-                int col = StdRandom.uniformInt(1, n + 1);
-                perc.open(row, col);
+    // checkpointed run as above, each worker's grid using the union-find unionFind builds
+    public PercolationStats(int n, int trials, long seed, int threads,
+                            IntFunction<? extends DynamicConnectivity> unionFind, Path checkpoint) {
+        if (n <= 0 || trials <= 0 || threads <= 0) {
+            throw new IllegalArgumentException(
+                    "n, trials and threads must be greater than 0");
+        }
+
+        this.stats = run(n, Double.NaN, trials, seed, threads, unionFind, null, checkpoint);
+    }
+
+    /**
+     * Perform trials on an n-by-n grid until the 95% confidence interval
+     * half-width is at most halfWidth, or maxTrials trials have run.
+     * Trials run in parallel rounds of blocks, as in the seeded constructor,
+     * but are folded into the statistics one at a time in trial order and
+     * the run stops at the first trial that meets the target. The trials that
+     * are used, and so the result, depend only on the seed, not the thread count.
+     */
+    public PercolationStats(int n, double halfWidth, int maxTrials, long seed, int threads) {
+        this(n, halfWidth, maxTrials, seed, threads, UnionFind::new, null, null);
+    }
+
+    /**
+     * As above, calling progress with the running statistics after every
+     * round of blocks, so long runs can report their current estimate.
+     */
+    public PercolationStats(int n, double halfWidth, int maxTrials, long seed, int threads,
+                            Consumer<RunningStats> progress) {
+        this(n, halfWidth, maxTrials, seed, threads, UnionFind::new, progress, null);
+    }
+
+    // adaptive run with progress reports, each worker's grid using the union-find unionFind builds
+    public PercolationStats(int n, double halfWidth, int maxTrials, long seed, int threads,
+                            IntFunction<? extends DynamicConnectivity> unionFind,
+                            Consumer<RunningStats> progress) {
+        this(n, halfWidth, maxTrials, seed, threads, unionFind, progress, null);
+    }
+
+    /**
+     * The adaptive run, checkpointing to the given file after every round.
+     * A checkpoint of the same run (same n, halfWidth, maxTrials and seed)
+     * is resumed from, and the result is identical to an uninterrupted run.
+     */
+    public PercolationStats(int n, double halfWidth, int maxTrials, long seed, int threads, Path checkpoint) {
+        this(n, halfWidth, maxTrials, seed, threads, UnionFind::new, null, checkpoint);
+    }
+
+    // the adaptive run with a union-find factory, progress reports and a checkpoint (either may be null)
+    public PercolationStats(int n, double halfWidth, int maxTrials, long seed, int threads,
+                            IntFunction<? extends DynamicConnectivity> unionFind,
+                            Consumer<RunningStats> progress, Path checkpoint) {
+        if (n <= 0 || maxTrials <= 0 || threads <= 0) {
+            throw new IllegalArgumentException(
+                    "n, maxTrials and threads must be greater than 0");
+        }
+        if (!(halfWidth > 0.0)) {
+            throw new IllegalArgumentException("halfWidth must be greater than 0");
+        }
+
+        this.stats = run(n, halfWidth, maxTrials, seed, threads, unionFind, progress, checkpoint);
+    }
+
+    /**
+     * Run trials in blocks. A fixed-trial run (NaN halfWidth) without a
+     * checkpoint submits every block at once and merges the per-block
+     * statistics in block order, so no worker waits on a round barrier.
+     * Checkpointed and adaptive runs go in rounds of whole blocks: a
+     * checkpoint is written after each round, and adaptive runs fold each
+     * round's thresholds in trial order to find the trial that meets the target.
+     */
+    private static RunningStats run(int n, double halfWidth, int maxTrials, long seed, int threads,
+                                    IntFunction<? extends DynamicConnectivity> unionFind,
+                                    Consumer<RunningStats> progress, Path checkpoint) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return runOn(pool, n, halfWidth, maxTrials, seed, unionFind, progress, checkpoint);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Body of run(); rounds are sized to the pool's parallelism
+    private static RunningStats runOn(ForkJoinPool pool, int n, double halfWidth, int maxTrials, long seed,
+                                      IntFunction<? extends DynamicConnectivity> unionFind,
+                                      Consumer<RunningStats> progress, Path checkpoint) {
+        SplittableRandom master = new SplittableRandom(seed);
+        RunningStats stats = new RunningStats();
+        if (checkpoint != null && Files.exists(checkpoint)) {
+            stats = readCheckpoint(checkpoint, n, halfWidth, maxTrials, seed);
+            // Skip the streams of the blocks already done (rounds are whole blocks)
+            BlockRunner.skip(master, stats.count());
+        }
+        boolean precise = stats.count() >= MIN_ADAPTIVE_TRIALS && stats.halfWidth() <= halfWidth;
+        // One grid per worker thread, reset between trials, so steady state allocates nothing
+        ThreadLocal<Percolation> grids = ThreadLocal.withInitial(() -> new Percolation(n, unionFind));
+
+        boolean fixed = Double.isNaN(halfWidth);
+        if (fixed && checkpoint == null) {
+            BlockRunner.merge(submitBlocks(pool, grids, n, master, (int) (maxTrials - stats.count())), stats);
+            return stats;
+        }
+
+        while (stats.count() < maxTrials && !precise) {
+            // Rounds are whole blocks, so block k always gets the k-th stream
+            int round = (int) Math.min(maxTrials - stats.count(),
+                    (long) pool.getParallelism() * BlockRunner.TRIALS_PER_STREAM);
+            if (fixed) {
+                // Merged block by block, exactly as without a checkpoint
+                BlockRunner.merge(submitBlocks(pool, grids, n, master, round), stats);
+            } else {
+                double[] batch = runTrials(pool, grids, n, master, round);
+                for (int i = 0; i < batch.length && !precise; i++) {
+                    stats.add(batch[i]);
+                    precise = stats.count() >= MIN_ADAPTIVE_TRIALS && stats.halfWidth() <= halfWidth;
+                }
+            }
+
+            if (checkpoint != null) {
+                writeCheckpoint(checkpoint, n, halfWidth, maxTrials, seed, stats);
             }
+            if (progress != null) {
+                progress.accept(stats);
+            }
+        }
+        return stats;
+    }
+
+    // Written to a temporary file and moved into place, so a kill never leaves half a checkpoint
+    private static void writeCheckpoint(Path checkpoint, int n, double halfWidth, int maxTrials,
+                                        long seed, RunningStats stats) {
+        Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(n);
+            out.writeDouble(halfWidth);
+            out.writeInt(maxTrials);
+            out.writeLong(seed);
+            stats.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint " + tmp, e);
+        }
+
+        try {
+            Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replace checkpoint " + checkpoint, e);
+        }
+    }
 
-            // Calculate threshold for this trial
-            thresholds[i] = (double) perc.numberOfOpenSites() / (n * n);
+    private static RunningStats readCheckpoint(Path checkpoint, int n, double halfWidth, int maxTrials,
+                                               long seed) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IllegalArgumentException("Not a PercolationStats checkpoint: " + checkpoint);
+            }
+            if (in.readInt() != n
+                    || Double.compare(in.readDouble(), halfWidth) != 0
+                    || in.readInt() != maxTrials
+                    || in.readLong() != seed) {
+                throw new IllegalArgumentException("Checkpoint " + checkpoint + " is for a different run");
+            }
+            return RunningStats.readFrom(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read checkpoint " + checkpoint, e);
         }
+    }
+
+    // Run count trials on the pool, one stream split off master per block, keeping each threshold
+    private static double[] runTrials(ForkJoinPool pool, ThreadLocal<Percolation> grids, int n,
+                                      SplittableRandom master, int count) {
+        double[] results = new double[count];
+        BlockRunner.awaitAll(BlockRunner.submit(pool, master, count, (from, to, stream) -> {
+            Percolation perc = grids.get();
+            for (int i = from; i < to; i++) {
+                results[i] = runTrial(perc, n, stream);
+            }
+            return null;
+        }));
+        return results;
+    }
 
-        // Calculate statistics
-        this.meanValue = StdStats.mean(thresholds);
-        this.stddevValue = StdStats.stddev(thresholds);
+    // Submit count trials to the pool; each block returns its statistics
+    private static List<CompletableFuture<RunningStats>> submitBlocks(ForkJoinPool pool,
+                                                                      ThreadLocal<Percolation> grids, int n,
+                                                                      SplittableRandom master, int count) {
+        return BlockRunner.submit(pool, master, count,
+                (from, to, stream) -> runBlock(grids.get(), n, stream, to - from));
+    }
+
+    // Run one block of trials on perc, drawing from stream; shared with FiniteSizeSweep
+    static RunningStats runBlock(Percolation perc, int n, SplittableRandom stream, int trials) {
+        RunningStats block = new RunningStats();
+        for (int i = 0; i < trials; i++) {
+            block.add(runTrial(perc, n, stream));
+        }
+        return block;
+    }
+
+    /**
+     * Resets perc, an n-by-n grid, and runs one seeded trial on it, returning
+     * the fraction of open sites when it percolates. This is the trial every
+     * seeded run uses, public so benchmarks can measure it directly.
+     */
+    public static double runTrial(Percolation perc, int n, SplittableRandom random) {
+        perc.reset();
+        return trial(perc, n, random::nextInt);
+    }
+
+    /**
+     * Run one trial on a blocked grid, returning the fraction of open sites
+     * when it percolates. uniform(n) returns an index in [0, n); every
+     * constructor runs its trials through here, so each one is reported as
+     * a JFR event when metrics are enabled.
+     */
+    private static double trial(Percolation perc, int n, IntUnaryOperator uniform) {
+        UnionFindMetrics.TrialEvent event = null;
+        if (UnionFindMetrics.ENABLED) {
+            event = new UnionFindMetrics.TrialEvent();
+            event.begin();
+        }
+
+        while (!perc.percolates()) {
+            int row = uniform.applyAsInt(n) + 1;
+            int col = uniform.applyAsInt(n) + 1;
+            perc.open(row, col);
+            if (perc.numberOfOpenSites() == n * n && !perc.percolates()) {
+                throw new IllegalArgumentException("Grid is larger than " + n + "-by-" + n);
+            }
+        }
+        double threshold = (double) perc.numberOfOpenSites() / (n * n);
+
+        if (event != null && event.shouldCommit()) {
+            event.n = n;
+            event.openSites = perc.numberOfOpenSites();
+            event.threshold = threshold;
+            event.commit();
+        }
+        return threshold;
+    }
+
+    // Result of merge(): the combined statistics of the shards
+    private PercolationStats(RunningStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Runs trials [fromTrial, toTrial) of the seeded run (n, seed) and writes
+     * their sufficient statistics to file. The trials are exactly the ones
+     * the seeded constructor would run at those positions, so shards over
+     * contiguous ranges from trial 0, run in any processes, merge to the full run.
+     * fromTrial must start a block, i.e. be a multiple of 64.
+     */
+    public static void writeShard(Path file, int n, long seed, int fromTrial, int toTrial, int threads) {
+        writeShard(file, n, seed, fromTrial, toTrial, threads, UnionFind::new);
+    }
+
+    // writes the shard as above, its grids using the union-find unionFind builds
+    public static void writeShard(Path file, int n, long seed, int fromTrial, int toTrial, int threads,
+                                  IntFunction<? extends DynamicConnectivity> unionFind) {
+        if (n <= 0 || threads <= 0 || fromTrial < 0 || toTrial <= fromTrial) {
+            throw new IllegalArgumentException(
+                    "Need n and threads greater than 0 and 0 <= fromTrial < toTrial");
+        }
+        if (fromTrial % BlockRunner.TRIALS_PER_STREAM != 0) {
+            throw new IllegalArgumentException(
+                    "fromTrial must be a multiple of " + BlockRunner.TRIALS_PER_STREAM + ": " + fromTrial);
+        }
+
+        SplittableRandom master = new SplittableRandom(seed);
+        BlockRunner.skip(master, fromTrial);
+        ThreadLocal<Percolation> grids = ThreadLocal.withInitial(() -> new Percolation(n, unionFind));
+        RunningStats stats = new RunningStats();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            BlockRunner.merge(submitBlocks(pool, grids, n, master, toTrial - fromTrial), stats);
+        } finally {
+            pool.shutdown();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(SHARD_MAGIC);
+            out.writeInt(n);
+            out.writeLong(seed);
+            out.writeInt(fromTrial);
+            out.writeInt(toTrial);
+            stats.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write shard " + file, e);
+        }
+    }
+
+    /**
+     * Combines shard files of one seeded run into its statistics, exactly
+     * (Chan's parallel update), without rerunning any trial. The shards must
+     * share n and seed, and their ranges must tile [0, T) for some T: no
+     * overlaps and no gaps, each range starting on a block boundary (so only
+     * the last can end off one). The result is then the seeded run of T
+     * trials, whatever order the shards are given in.
+     */
+    public static PercolationStats merge(List<Path> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("No shards to merge");
+        }
+
+        List<Shard> read = new ArrayList<>();
+        for (Path shard : shards) {
+            Shard next = Shard.read(shard);
+            if (!read.isEmpty() && (next.n != read.get(0).n || next.seed != read.get(0).seed)) {
+                throw new IllegalArgumentException(shard + " is from a different run (n=" + next.n
+                        + ", seed=" + next.seed + "; expected n=" + read.get(0).n
+                        + ", seed=" + read.get(0).seed + ")");
+            }
+            read.add(next);
+        }
+
+        // Ranges must follow on from each other, so every trial is counted exactly once
+        read.sort((x, y) -> Integer.compare(x.from, y.from));
+        RunningStats merged = new RunningStats();
+        int end = 0;
+        for (Shard shard : read) {
+            if (shard.from != end) {
+                throw new IllegalArgumentException(shard.from < end
+                        ? "Shards overlap: trials [" + shard.from + ", " + end + ") appear twice"
+                        : "Shards leave a gap: trials [" + end + ", " + shard.from + ") are missing");
+            }
+            merged.merge(shard.stats);
+            end = shard.to;
+        }
+        return new PercolationStats(merged);
+    }
+
+    // One shard file's header and statistics
+    private static final class Shard {
+        final int n;
+        final long seed;
+        final int from;
+        final int to;
+        final RunningStats stats;
+
+        private Shard(int n, long seed, int from, int to, RunningStats stats) {
+            this.n = n;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+            this.stats = stats;
+        }
+
+        // Reads and checks one shard: a valid range, and exactly to - from trials in it
+        static Shard read(Path file) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != SHARD_MAGIC) {
+                    throw new IllegalArgumentException("Not a PercolationStats shard: " + file);
+                }
+                int n = in.readInt();
+                long seed = in.readLong();
+                int from = in.readInt();
+                int to = in.readInt();
+                RunningStats stats = RunningStats.readFrom(in);
+                if (n <= 0 || from < 0 || to <= from || from % BlockRunner.TRIALS_PER_STREAM != 0) {
+                    throw new IllegalArgumentException("Corrupt shard " + file + ": n=" + n
+                            + ", trials [" + from + ", " + to + ")");
+                }
+                if (stats.count() != to - from) {
+                    throw new IllegalArgumentException("Corrupt shard " + file + ": " + stats.count()
+                            + " trials for the range [" + from + ", " + to + ")");
+                }
+                return new Shard(n, seed, from, to, stats);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read shard " + file, e);
+            }
+        }
+    }
+
+    // number of trials actually run
+    public int trials() {
+        return (int) stats.count();
+    }
+
+    // copy of the accumulated statistics, e.g. to merge with other runs
+    public RunningStats statistics() {
+        return new RunningStats(stats);
     }
 
     // sample mean of percolation threshold
     public double mean() {
-        return meanValue;
+        return stats.mean();
     }
 
     // sample standard deviation of percolation threshold
     public double stddev() {
-        return stddevValue;
+        return stats.stddev();
     }
 
     // low endpoint of 95% confidence interval
     public double confidenceLo() {
-        return meanValue - (CONFIDENCE_95 * stddevValue / Math.sqrt(trials));
+        return stats.confidenceLo();
     }
 
     // high endpoint of 95% confidence interval
     public double confidenceHi() {
-        return meanValue + (CONFIDENCE_95 * stddevValue / Math.sqrt(trials));
+        return stats.confidenceHi();
     }
 
     // test client
     public static void main(String[] args) {
-        if (args.length != 2) {
-            System.out.println("Usage: java com.princeton.partone.module2.PercolationStats n trials");
+        if (args.length == 7 && args[0].equals("shard")) {
+            writeShard(Paths.get(args[1]), Integer.parseInt(args[2]), Long.parseLong(args[3]),
+                    Integer.parseInt(args[4]), Integer.parseInt(args[5]), Integer.parseInt(args[6]));
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("merge")) {
+            List<Path> shards = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                shards.add(Paths.get(args[i]));
+            }
+            print(merge(shards));
+            return;
+        }
+        if (args.length != 2 && args.length != 4 && args.length != 5) {
+            System.out.println("Usage: java com.princeton.partone.module2.PercolationStats n trials [seed threads [halfWidth]]");
+            System.out.println("       with halfWidth, trials is the maximum trial budget");
+            System.out.println("   or: java com.princeton.partone.module2.PercolationStats shard file n seed fromTrial toTrial threads");
+            System.out.println("   or: java com.princeton.partone.module2.PercolationStats merge shard...");
             return;
         }
 
         int n = Integer.parseInt(args[0]);
         int trials = Integer.parseInt(args[1]);
 
-        PercolationStats stats = new PercolationStats(n, trials);
+        PercolationStats stats;
+        if (args.length == 5) {
+            long seed = Long.parseLong(args[2]);
+            int threads = Integer.parseInt(args[3]);
+            double halfWidth = Double.parseDouble(args[4]);
+            stats = new PercolationStats(n, halfWidth, trials, seed, threads,
+                    progress -> System.err.println("progress: " + progress));
+        } else if (args.length == 4) {
+            long seed = Long.parseLong(args[2]);
+            int threads = Integer.parseInt(args[3]);
+            stats = new PercolationStats(n, trials, seed, threads);
+        } else {
+            stats = new PercolationStats(n, trials);
+        }
+        print(stats);
+    }
 
+    private static void print(PercolationStats stats) {
+        System.out.println("trials                  = " + stats.trials());
         System.out.println("mean                    = " + stats.mean());
         System.out.println("stddev                  = " + stats.stddev());
         System.out.println("95% confidence interval = ["
@@ -0,0 +1,258 @@
+package com.princeton.partone.module2;
+
+import edu.princeton.cs.algs4.StdRandom;
+
+/**
+ * Newman–Ziff sweep mode for percolation statistics.
+ *
+ * Instead of drawing random sites until the system percolates (which keeps
+ * re-drawing already open sites), each trial opens all n*n sites once, in
+ * the order of a single random permutation. After every opened site it
+ * records the observables for that occupation k:
+ *   - whether the system spans top to bottom
+ *   - the size of the largest cluster
+ * and the first k at which the system spans (the percolation point).
+ *
+ * Averaging over trials gives the curves at every fixed k. The curves at
+ * any site probability p then follow by a binomial convolution over k, so
+ * one run replaces a whole p-sweep of PercolationStats runs.
+ */
+public class PercolationSweep {
+    private final int n;
+    private final int sites;
+    private final int trials;
+    private final RunningStats thresholds;
+    private final long[] spanningCount;   // [k] = trials spanning after k opened sites
+    private final double[] largestSum;    // [k] = sum over trials of the largest cluster size
+
+    // Per-trial union-find: parent[i] < 0 marks a root of size -parent[i]
+    private final int[] parent;
+    private final byte[] status;
+    private final boolean[] open;
+    private final int[] order;
+
+    // perform independent sweeps on an n-by-n grid
+    public PercolationSweep(int n, int trials) {
+        if (n <= 0 || trials <= 0) {
+            throw new IllegalArgumentException(
+                    "Both n and trials must be greater than 0");
+        }
+
+        this.n = n;
+        this.sites = n * n;
+        this.trials = trials;
+        this.thresholds = new RunningStats();
+        this.spanningCount = new long[sites + 1];
+        this.largestSum = new double[sites + 1];
+        this.parent = new int[sites];
+        this.status = new byte[sites];
+        this.open = new boolean[sites];
+        this.order = new int[sites];
+
+        for (int i = 0; i < sites; i++) {
+            order[i] = i;
+        }
+
+        for (int t = 0; t < trials; t++) {
+            // Shuffling the previous permutation still yields a uniform one
+            StdRandom.shuffle(order);
+            thresholds.add((double) sweep() / sites);
+        }
+    }
+
+    // Open every site in permutation order, returning the percolation point
+    private int sweep() {
+        for (int i = 0; i < sites; i++) {
+            parent[i] = -1;
+            status[i] = 0;
+            open[i] = false;
+        }
+
+        int largest = 0;
+        int percolationPoint = 0;
+        for (int k = 1; k <= sites; k++) {
+            int site = order[k - 1];
+            int row = site / n;
+            int col = site % n;
+            open[site] = true;
+
+            if (row == 0) {
+                status[site] |= Percolation.CONNECTED_TOP;
+            }
+            if (row == n - 1) {
+                status[site] |= Percolation.CONNECTED_BOTTOM;
+            }
+
+            int root = site;
+            if (row > 0 && open[site - n]) {
+                root = union(root, site - n);
+            }
+            if (row < n - 1 && open[site + n]) {
+                root = union(root, site + n);
+            }
+            if (col > 0 && open[site - 1]) {
+                root = union(root, site - 1);
+            }
+            if (col < n - 1 && open[site + 1]) {
+                root = union(root, site + 1);
+            }
+
+            largest = Math.max(largest, -parent[root]);
+            if (percolationPoint == 0 && status[root] == Percolation.CONNECTED_BOTH) {
+                percolationPoint = k;
+            }
+
+            if (percolationPoint != 0) {
+                spanningCount[k]++;
+            }
+            largestSum[k] += largest;
+        }
+        return percolationPoint;
+    }
+
+    // Find with path halving
+    private int find(int p) {
+        while (parent[p] >= 0) {
+            if (parent[parent[p]] >= 0) {
+                parent[p] = parent[parent[p]];
+            }
+            p = parent[p];
+        }
+        return p;
+    }
+
+    // Union by size of root with q's component, returning the new root
+    private int union(int root, int q) {
+        int rootQ = find(q);
+        if (root == rootQ) {
+            return root;
+        }
+        if (parent[root] > parent[rootQ]) {   // root is the smaller tree
+            int tmp = root;
+            root = rootQ;
+            rootQ = tmp;
+        }
+        parent[root] += parent[rootQ];
+        parent[rootQ] = root;
+        status[root] |= status[rootQ];
+        return root;
+    }
+
+    // number of sites n*n, i.e. the largest occupation k
+    public int sites() {
+        return sites;
+    }
+
+    // fraction of trials spanning top to bottom with exactly k open sites
+    public double spanningProbability(int k) {
+        validate(k);
+        return (double) spanningCount[k] / trials;
+    }
+
+    // mean largest-cluster size with exactly k open sites, as a fraction of n*n
+    public double largestClusterFraction(int k) {
+        validate(k);
+        return largestSum[k] / trials / sites;
+    }
+
+    // spanning probability when each site is open independently with probability p
+    public double spanningProbabilityAt(double p) {
+        double[] fixedK = new double[sites + 1];
+        for (int k = 0; k <= sites; k++) {
+            fixedK[k] = (double) spanningCount[k] / trials;
+        }
+        return convolve(fixedK, p);
+    }
+
+    // largest-cluster fraction when each site is open independently with probability p
+    public double largestClusterFractionAt(double p) {
+        double[] fixedK = new double[sites + 1];
+        for (int k = 0; k <= sites; k++) {
+            fixedK[k] = largestSum[k] / trials / sites;
+        }
+        return convolve(fixedK, p);
+    }
+
+    // Sum_k B(N, k, p) * q[k], expanding the binomial outward from its mode
+    private double convolve(double[] q, double p) {
+        if (p < 0.0 || p > 1.0) {
+            throw new IllegalArgumentException("p must be in [0, 1]");
+        }
+        if (p == 0.0) {
+            return q[0];
+        }
+        if (p == 1.0) {
+            return q[sites];
+        }
+
+        int mode = (int) Math.min(sites, Math.floor((sites + 1) * p));
+        double ratio = p / (1.0 - p);
+        double weightSum = 1.0;
+        double total = q[mode];
+
+        double weight = 1.0;
+        for (int k = mode; k < sites && weight > 1e-16 * weightSum; k++) {
+            weight *= ratio * (sites - k) / (k + 1);
+            weightSum += weight;
+            total += weight * q[k + 1];
+        }
+        weight = 1.0;
+        for (int k = mode; k > 0 && weight > 1e-16 * weightSum; k--) {
+            weight *= k / (ratio * (sites - k + 1));
+            weightSum += weight;
+            total += weight * q[k - 1];
+        }
+        return total / weightSum;
+    }
+
+    // sample mean of percolation threshold
+    public double mean() {
+        return thresholds.mean();
+    }
+
+    // sample standard deviation of percolation threshold
+    public double stddev() {
+        return thresholds.stddev();
+    }
+
+    // low endpoint of 95% confidence interval
+    public double confidenceLo() {
+        return thresholds.confidenceLo();
+    }
+
+    // high endpoint of 95% confidence interval
+    public double confidenceHi() {
+        return thresholds.confidenceHi();
+    }
+
+    private void validate(int k) {
+        if (k < 0 || k > sites) {
+            throw new IllegalArgumentException("k must be in [0, " + sites + "]");
+        }
+    }
+
+    // test client
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java com.princeton.partone.module2.PercolationSweep n trials");
+            return;
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+
+        PercolationSweep sweep = new PercolationSweep(n, trials);
+
+        System.out.println("mean                    = " + sweep.mean());
+        System.out.println("stddev                  = " + sweep.stddev());
+        System.out.println("95% confidence interval = ["
+                + sweep.confidenceLo() + ", " + sweep.confidenceHi() + "]");
+
+        System.out.println("\n   p     spanning  largest");
+        for (int i = 40; i <= 80; i += 2) {
+            double p = i / 100.0;
+            System.out.printf("%.2f    %.4f    %.4f%n", p,
+                    sweep.spanningProbabilityAt(p), sweep.largestClusterFractionAt(p));
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.princeton.partone.module2;
+
+import java.util.Arrays;
+
+/**
+ * Percolation with sites that close again: answers percolates() and isFull
+ * queries after every step of a timeline of open and close events, offline.
+ *
+ * Each site is open over a few intervals of steps. Every interval is stored
+ * on the O(log T) nodes of a segment tree over the T steps that cover it; a
+ * depth-first walk then opens a node's sites on entry and rolls them back on
+ * exit with a RollbackPercolation, so at each leaf exactly the sites open at
+ * that step are open. Total cost O(T log T log n) for T events, instead of
+ * a rebuild per close.
+ *
+ * Usage: record events with open() and close() and queries with queryFull(),
+ * call solve(), then read the answers.
+ */
+public class PercolationTimeline {
+    private static final int NONE = -1;
+
+    private final int n;
+    private int[] eventSite = new int[16];   // site index, -1 - index for a close
+    private int events;
+    private int[] querySite = new int[16];
+    private int[] queryStep = new int[16];   // answered after this event, -1 = before any
+    private int queries;
+
+    private boolean[] percolates;
+    private boolean[] full;
+
+    // segment tree nodes hold linked lists of sites: head[node] -> site/next
+    private int[] head;
+    private int[] itemSite;
+    private int[] itemNext;
+    private int items;
+
+    // timeline for an n-by-n grid, with all sites initially blocked
+    public PercolationTimeline(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be greater than 0");
+        }
+        this.n = n;
+    }
+
+    // appends an event opening (row, col); no effect on the state if it is open already
+    public void open(int row, int col) {
+        addEvent(index(row, col));
+    }
+
+    // appends an event blocking (row, col) again; no effect on the state if it is blocked
+    public void close(int row, int col) {
+        addEvent(-1 - index(row, col));
+    }
+
+    // registers the query "is (row, col) full after the events so far?", returning its id
+    public int queryFull(int row, int col) {
+        requireUnsolved();
+        int site = index(row, col);
+        if (queries == querySite.length) {
+            querySite = Arrays.copyOf(querySite, queries * 2);
+            queryStep = Arrays.copyOf(queryStep, queries * 2);
+        }
+        querySite[queries] = site;
+        queryStep[queries] = events - 1;
+        return queries++;
+    }
+
+    private void addEvent(int encoded) {
+        requireUnsolved();
+        if (events == eventSite.length) {
+            eventSite = Arrays.copyOf(eventSite, events * 2);
+        }
+        eventSite[events++] = encoded;
+    }
+
+    // answers every step and query; call once, after all events are recorded
+    public void solve() {
+        requireUnsolved();
+        percolates = new boolean[events];
+        full = new boolean[queries];
+        if (events == 0) {
+            return;  // nothing opened, so no query is full
+        }
+
+        int leaves = Integer.highestOneBit(Math.max(1, events - 1)) << 1;
+        head = new int[2 * leaves];
+        Arrays.fill(head, NONE);
+        itemSite = new int[16];
+        itemNext = new int[16];
+
+        // Split each site's history into open intervals [from, to]
+        int[] openedAt = new int[n * n];
+        Arrays.fill(openedAt, NONE);
+        for (int step = 0; step < events; step++) {
+            int e = eventSite[step];
+            if (e >= 0 && openedAt[e] == NONE) {
+                openedAt[e] = step;
+            } else if (e < 0 && openedAt[-1 - e] != NONE) {
+                insert(1, 0, leaves - 1, openedAt[-1 - e], step - 1, -1 - e);
+                openedAt[-1 - e] = NONE;
+            }
+        }
+        for (int site = 0; site < openedAt.length; site++) {
+            if (openedAt[site] != NONE) {
+                insert(1, 0, leaves - 1, openedAt[site], events - 1, site);
+            }
+        }
+
+        // Queries grouped by step, as a linked list per step
+        int[] queryHead = new int[events];
+        int[] queryNext = new int[queries];
+        Arrays.fill(queryHead, NONE);
+        for (int q = queries - 1; q >= 0; q--) {
+            if (queryStep[q] >= 0) {
+                queryNext[q] = queryHead[queryStep[q]];
+                queryHead[queryStep[q]] = q;
+            }
+        }
+
+        walk(new RollbackPercolation(n), 1, 0, leaves - 1, queryHead, queryNext);
+        head = null;
+        itemSite = null;
+        itemNext = null;
+    }
+
+    // Store site on the nodes covering [from, to] within node's range [lo, hi]
+    private void insert(int node, int lo, int hi, int from, int to, int site) {
+        if (to < lo || hi < from || from > to) {
+            return;
+        }
+        if (from <= lo && hi <= to) {
+            if (items == itemSite.length) {
+                itemSite = Arrays.copyOf(itemSite, items * 2);
+                itemNext = Arrays.copyOf(itemNext, items * 2);
+            }
+            itemSite[items] = site;
+            itemNext[items] = head[node];
+            head[node] = items++;
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        insert(2 * node, lo, mid, from, to, site);
+        insert(2 * node + 1, mid + 1, hi, from, to, site);
+    }
+
+    private void walk(RollbackPercolation perc, int node, int lo, int hi, int[] queryHead, int[] queryNext) {
+        if (lo >= events) {
+            return;  // padding beyond the last step
+        }
+
+        perc.checkpoint();
+        for (int i = head[node]; i != NONE; i = itemNext[i]) {
+            perc.open(itemSite[i] / n + 1, itemSite[i] % n + 1);
+        }
+
+        if (lo == hi) {
+            percolates[lo] = perc.percolates();
+            for (int q = queryHead[lo]; q != NONE; q = queryNext[q]) {
+                full[q] = perc.isFull(querySite[q] / n + 1, querySite[q] % n + 1);
+            }
+        } else {
+            int mid = (lo + hi) >>> 1;
+            walk(perc, 2 * node, lo, mid, queryHead, queryNext);
+            walk(perc, 2 * node + 1, mid + 1, hi, queryHead, queryNext);
+        }
+        perc.rollback();
+    }
+
+    public int numberOfEvents() {
+        return events;
+    }
+
+    // does the system percolate after event step (0-based)?
+    public boolean percolates(int step) {
+        requireSolved();
+        if (step < 0 || step >= events) {
+            throw new IllegalArgumentException("step out of range: " + step + ", events=" + events);
+        }
+        return percolates[step];
+    }
+
+    // answer to the queryFull() query with the given id
+    public boolean isFullAnswer(int query) {
+        requireSolved();
+        if (query < 0 || query >= queries) {
+            throw new IllegalArgumentException("Unknown query: " + query);
+        }
+        return full[query];
+    }
+
+    private void requireUnsolved() {
+        if (percolates != null) {
+            throw new IllegalStateException("Timeline already solved");
+        }
+    }
+
+    private void requireSolved() {
+        if (percolates == null) {
+            throw new IllegalStateException("Call solve() first");
+        }
+    }
+
+    private int index(int row, int col) {
+        if (row < 1 || row > n || col < 1 || col > n) {
+            throw new IllegalArgumentException(
+                    "Index out of bounds: row=" + row + ", col=" + col + ", n=" + n);
+        }
+        return (row - 1) * n + (col - 1);
+    }
+
+    // test client
+    public static void main(String[] args) {
+        PercolationTimeline timeline = new PercolationTimeline(3);
+        timeline.open(1, 2);
+        timeline.open(2, 2);
+        timeline.open(3, 2);       // step 2: column 2 spans
+        int q1 = timeline.queryFull(3, 2);
+        timeline.close(2, 2);      // step 3: broken
+        int q2 = timeline.queryFull(3, 2);
+        timeline.open(2, 1);
+        timeline.open(1, 1);
+        timeline.open(3, 1);       // step 6: column 1 spans
+        timeline.open(2, 2);       // step 7: repaired
+
+        timeline.solve();
+        System.out.println("Percolates after step 2: " + timeline.percolates(2) + " (expected: true)");
+        System.out.println("Percolates after step 3: " + timeline.percolates(3) + " (expected: false)");
+        System.out.println("Percolates after step 6: " + timeline.percolates(6) + " (expected: true)");
+        System.out.println("(3,2) full before close: " + timeline.isFullAnswer(q1) + " (expected: true)");
+        System.out.println("(3,2) full after close: " + timeline.isFullAnswer(q2) + " (expected: false)");
+    }
+}
@@ -0,0 +1,51 @@
+package com.princeton.partone.module2;
+
+/**
+ * Quick-find: id[p] is the component of p.
+ * find: O(1), union: O(n)
+ */
+public class QuickFindUF implements DynamicConnectivity {
+    private final int[] id;
+    private int count;
+
+    public QuickFindUF(int n) {
+        id = new int[n];
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        count = id.length;
+        for (int i = 0; i < id.length; i++) {
+            id[i] = i;
+        }
+    }
+
+    @Override
+    public int find(int p) {
+        return id[p];
+    }
+
+    @Override
+    public boolean union(int p, int q) {
+        int pid = id[p];
+        int qid = id[q];
+        if (pid == qid) {
+            return false;
+        }
+
+        // Relabel every site of p's component
+        for (int i = 0; i < id.length; i++) {
+            if (id[i] == pid) {
+                id[i] = qid;
+            }
+        }
+        count--;
+        return true;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+}
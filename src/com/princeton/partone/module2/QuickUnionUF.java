@@ -0,0 +1,50 @@
+package com.princeton.partone.module2;
+
+/**
+ * Quick-union without balancing: link p's root under q's root.
+ * find/union: O(n) worst case (trees can degenerate into paths)
+ */
+public class QuickUnionUF implements DynamicConnectivity {
+    private final int[] parent;
+    private int count;
+
+    public QuickUnionUF(int n) {
+        parent = new int[n];
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        count = parent.length;
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+    }
+
+    // Iterative, since unbalanced trees can be far too deep to recurse
+    @Override
+    public int find(int p) {
+        while (p != parent[p]) {
+            p = parent[p];
+        }
+        return p;
+    }
+
+    @Override
+    public boolean union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return false;
+        }
+
+        parent[rootP] = rootQ;
+        count--;
+        return true;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+}
@@ -0,0 +1,61 @@
+package com.princeton.partone.module2;
+
+/**
+ * Rem's algorithm: index-based linking (parent[i] <= i always, so a root is
+ * the smallest site of its component) with splicing. union() walks up both
+ * paths at once, re-pointing nodes at the other path as it goes, and stops
+ * as soon as the paths meet, often without reaching either root.
+ * Typically the fastest sequential union-find in practice.
+ */
+public class RemUF implements DynamicConnectivity {
+    private final int[] parent;
+    private int count;
+
+    public RemUF(int n) {
+        parent = new int[n];
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        count = parent.length;
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+    }
+
+    @Override
+    public int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];  // path halving keeps parent[i] <= i
+            p = parent[p];
+        }
+        return p;
+    }
+
+    @Override
+    public boolean union(int p, int q) {
+        while (parent[p] != parent[q]) {
+            // Keep p on the side with the larger parent
+            if (parent[p] < parent[q]) {
+                int tmp = p;
+                p = q;
+                q = tmp;
+            }
+            if (p == parent[p]) {
+                parent[p] = parent[q];  // p is a root: link it, done
+                count--;
+                return true;
+            }
+            int next = parent[p];
+            parent[p] = parent[q];      // splice p onto q's path
+            p = next;
+        }
+        return false;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+}
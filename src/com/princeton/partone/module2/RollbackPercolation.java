@@ -0,0 +1,252 @@
+package com.princeton.partone.module2;
+
+import java.util.Arrays;
+
+/**
+ * Percolation with checkpoint / rollback, for what-if queries such as
+ * "would opening these k sites make the system percolate?".
+ *
+ * Uses the Percolation scheme (one union-find, top/bottom flags on each
+ * root) with union by rank and no path compression, so every union changes
+ * exactly one parent pointer and can be undone. While a checkpoint is
+ * active each change is appended to an undo log; rollback() replays the log
+ * backwards, in time proportional to the work done since the checkpoint.
+ *
+ * find/union: O(log n)   rollback: O(changes since checkpoint)
+ * A k-site what-if query therefore costs O(k log n) instead of a copy.
+ */
+public class RollbackPercolation {
+    private static final int RANK_BUMPED = 1 << 2;
+
+    private final int n;
+    private final long[] openBits;
+    private final int[] parent;
+    private final byte[] rank;    // see UnionByRank
+    private final byte[] status;  // only meaningful at component roots
+    private int openSites;
+    private boolean percolates;
+
+    // Undo log, two ints per change:
+    //   open:  (-1 - site, 0)
+    //   union: (child, root's old status | RANK_BUMPED if root's rank grew)
+    private int[] log = new int[64];
+    private int logSize;
+    // One entry per active checkpoint: logSize << 1 | percolates
+    private long[] marks = new long[8];
+    private int depth;
+
+    // creates n-by-n grid, with all sites initially blocked
+    public RollbackPercolation(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be greater than 0");
+        }
+
+        this.n = n;
+        this.openBits = new long[(n * n + 63) >>> 6];
+        this.parent = new int[n * n];
+        this.rank = new byte[n * n];
+        this.status = new byte[n * n];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+    }
+
+    // opens the site (row, col) if it is not open already
+    public void open(int row, int col) {
+        validate(row, col);
+        int index = (row - 1) * n + (col - 1);
+        if (isOpenSite(index)) {
+            return;
+        }
+
+        openBits[index >>> 6] |= 1L << index;
+        openSites++;
+        record(-1 - index, 0);
+
+        // A freshly opened site is its own root, so its flags need no undo entry
+        byte flags = 0;
+        if (row == 1) {
+            flags |= Percolation.CONNECTED_TOP;
+        }
+        if (row == n) {
+            flags |= Percolation.CONNECTED_BOTTOM;
+        }
+        status[index] = flags;
+
+        if (row > 1 && isOpenSite(index - n)) {
+            union(index, index - n);
+        }
+        if (row < n && isOpenSite(index + n)) {
+            union(index, index + n);
+        }
+        if (col > 1 && isOpenSite(index - 1)) {
+            union(index, index - 1);
+        }
+        if (col < n && isOpenSite(index + 1)) {
+            union(index, index + 1);
+        }
+
+        if (status[find(index)] == Percolation.CONNECTED_BOTH) {
+            percolates = true;
+        }
+    }
+
+    // Union by rank; the child's parent, the root's rank and the root's flags are logged
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return;
+        }
+
+        boolean bump = rank[rootP] == rank[rootQ];
+        int child = UnionByRank.link(parent, rank, rootP, rootQ);
+        int root = parent[child];
+        record(child, status[root] | (bump ? RANK_BUMPED : 0));
+        status[root] |= status[child];
+    }
+
+    // No path compression, so the tree shape depends only on the unions
+    private int find(int p) {
+        while (p != parent[p]) {
+            p = parent[p];
+        }
+        return p;
+    }
+
+    private void record(int a, int b) {
+        if (depth == 0) {
+            return;  // nothing to roll back to
+        }
+        if (logSize + 2 > log.length) {
+            log = Arrays.copyOf(log, log.length * 2);
+        }
+        log[logSize++] = a;
+        log[logSize++] = b;
+    }
+
+    // starts recording changes; checkpoints nest
+    public void checkpoint() {
+        if (depth == marks.length) {
+            marks = Arrays.copyOf(marks, marks.length * 2);
+        }
+        marks[depth++] = (long) logSize << 1 | (percolates ? 1 : 0);
+    }
+
+    // undoes every open() since the matching checkpoint()
+    public void rollback() {
+        if (depth == 0) {
+            throw new IllegalStateException("No checkpoint to roll back to");
+        }
+
+        long mark = marks[--depth];
+        int target = (int) (mark >>> 1);
+        while (logSize > target) {
+            int b = log[--logSize];
+            int a = log[--logSize];
+            if (a < 0) {
+                int index = -1 - a;
+                openBits[index >>> 6] &= ~(1L << index);
+                status[index] = 0;
+                openSites--;
+            } else {
+                int root = parent[a];
+                parent[a] = a;
+                status[root] = (byte) (b & Percolation.CONNECTED_BOTH);
+                if ((b & RANK_BUMPED) != 0) {
+                    rank[root]--;
+                }
+            }
+        }
+        percolates = (mark & 1) != 0;
+    }
+
+    // keeps every change since the matching checkpoint() and stops recording them
+    public void commit() {
+        if (depth == 0) {
+            throw new IllegalStateException("No checkpoint to commit");
+        }
+
+        depth--;
+        if (depth == 0) {
+            logSize = 0;
+        }
+    }
+
+    /**
+     * Would opening the given sites (rows[i], cols[i]) make the system
+     * percolate? Leaves the grid unchanged; O(k log n) for k sites.
+     */
+    public boolean wouldPercolate(int[] rows, int[] cols) {
+        if (rows.length != cols.length) {
+            throw new IllegalArgumentException("rows and cols must have the same length");
+        }
+        for (int i = 0; i < rows.length; i++) {
+            validate(rows[i], cols[i]);
+        }
+
+        checkpoint();
+        try {
+            for (int i = 0; i < rows.length && !percolates; i++) {
+                open(rows[i], cols[i]);
+            }
+            return percolates;
+        } finally {
+            rollback();
+        }
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        validate(row, col);
+        return isOpenSite((row - 1) * n + (col - 1));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        validate(row, col);
+        int index = (row - 1) * n + (col - 1);
+        return isOpenSite(index) && (status[find(index)] & Percolation.CONNECTED_TOP) != 0;
+    }
+
+    public int numberOfOpenSites() {
+        return openSites;
+    }
+
+    public boolean percolates() {
+        return percolates;
+    }
+
+    private boolean isOpenSite(int index) {
+        return (openBits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void validate(int row, int col) {
+        if (row < 1 || row > n || col < 1 || col > n) {
+            throw new IllegalArgumentException(
+                    "Index out of bounds: row=" + row + ", col=" + col + ", n=" + n);
+        }
+    }
+
+    // test client
+    public static void main(String[] args) {
+        RollbackPercolation perc = new RollbackPercolation(3);
+        perc.open(1, 1);
+        perc.open(2, 1);
+
+        System.out.println("Would (3,1) percolate? " + perc.wouldPercolate(new int[] {3}, new int[] {1})
+                + " (expected: true)");
+        System.out.println("Would (3,2) percolate? " + perc.wouldPercolate(new int[] {3}, new int[] {2})
+                + " (expected: false)");
+        System.out.println("Open sites after queries: " + perc.numberOfOpenSites() + " (expected: 2)");
+
+        perc.checkpoint();
+        perc.open(2, 2);
+        perc.open(3, 2);
+        System.out.println("Percolates inside checkpoint: " + perc.percolates() + " (expected: true)");
+        perc.rollback();
+        System.out.println("Percolates after rollback: " + perc.percolates() + " (expected: false)");
+        System.out.println("isFull(2,2) after rollback: " + perc.isFull(2, 2) + " (expected: false)");
+        System.out.println("isFull(2,1) after rollback: " + perc.isFull(2, 1) + " (expected: true)");
+    }
+}
@@ -0,0 +1,260 @@
+package com.princeton.partone.module2;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Constant-memory streaming statistics.
+ *
+ * Keeps count, mean and the sum of squared deviations (M2) with Welford's
+ * update, plus min and max, so every value can be read after any number of
+ * observations. Two accumulators can be merged exactly (Chan et al.), which
+ * lets separate workers or runs be combined without keeping their samples.
+ *
+ * Optionally keeps a fixed-bin histogram over [lo, hi] as a mergeable
+ * quantile sketch; quantiles are then accurate to one bin width.
+ */
+public class RunningStats {
+    private static final double CONFIDENCE_95 = 1.96;
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min;
+    private double max;
+
+    // Optional quantile sketch: bins[i] counts values in [lo + i*w, lo + (i+1)*w)
+    private final long[] bins;
+    private final double lo;
+    private final double hi;
+
+    // accumulator without a quantile sketch
+    public RunningStats() {
+        this(0.0, 0.0, 0);
+    }
+
+    // accumulator with a bins-bucket histogram over [lo, hi] for quantiles
+    public RunningStats(double lo, double hi, int bins) {
+        if (bins < 0 || (bins > 0 && !(hi > lo))) {
+            throw new IllegalArgumentException(
+                    "Need bins >= 0 and, for a sketch, lo < hi");
+        }
+
+        this.bins = bins > 0 ? new long[bins] : null;
+        this.lo = lo;
+        this.hi = hi;
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+    }
+
+    // independent copy of other
+    public RunningStats(RunningStats other) {
+        this.count = other.count;
+        this.mean = other.mean;
+        this.m2 = other.m2;
+        this.min = other.min;
+        this.max = other.max;
+        this.bins = other.bins != null ? other.bins.clone() : null;
+        this.lo = other.lo;
+        this.hi = other.hi;
+    }
+
+    // adds one observation; O(1)
+    public void add(double x) {
+        count++;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+        min = Math.min(min, x);
+        max = Math.max(max, x);
+
+        if (bins != null) {
+            bins[bin(x)]++;
+        }
+    }
+
+    // folds other into this accumulator, as if all its observations were added here
+    public void merge(RunningStats other) {
+        if ((bins == null) != (other.bins == null)
+                || (bins != null && (bins.length != other.bins.length || lo != other.lo || hi != other.hi))) {
+            throw new IllegalArgumentException("Quantile sketches have different layouts");
+        }
+        if (other.count == 0) {
+            return;
+        }
+
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+
+        if (bins != null) {
+            for (int i = 0; i < bins.length; i++) {
+                bins[i] += other.bins[i];
+            }
+        }
+    }
+
+    // Values outside [lo, hi] are clamped into the end bins
+    private int bin(double x) {
+        int i = (int) ((x - lo) / (hi - lo) * bins.length);
+        return Math.max(0, Math.min(bins.length - 1, i));
+    }
+
+    public long count() {
+        return count;
+    }
+
+    // sum of squared deviations from the mean, the raw Welford state
+    public double m2() {
+        return m2;
+    }
+
+    // sample mean, NaN before the first observation
+    public double mean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    // sample variance, NaN before the second observation
+    public double variance() {
+        return count > 1 ? m2 / (count - 1) : Double.NaN;
+    }
+
+    // sample standard deviation, NaN before the second observation
+    public double stddev() {
+        return Math.sqrt(variance());
+    }
+
+    public double min() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double max() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    // half-width of the 95% confidence interval for the mean
+    public double halfWidth() {
+        return CONFIDENCE_95 * stddev() / Math.sqrt(count);
+    }
+
+    // low endpoint of 95% confidence interval
+    public double confidenceLo() {
+        return mean() - halfWidth();
+    }
+
+    // high endpoint of 95% confidence interval
+    public double confidenceHi() {
+        return mean() + halfWidth();
+    }
+
+    public boolean hasQuantiles() {
+        return bins != null;
+    }
+
+    /**
+     * Estimated q-quantile from the histogram, interpolating linearly within
+     * the bin that holds it. Accurate to one bin width.
+     */
+    public double quantile(double q) {
+        if (bins == null) {
+            throw new UnsupportedOperationException("No quantile sketch configured");
+        }
+        if (q < 0.0 || q > 1.0) {
+            throw new IllegalArgumentException("q must be in [0, 1]");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        double width = (hi - lo) / bins.length;
+        double target = q * count;
+        long seen = 0;
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i] > 0 && seen + bins[i] >= target) {
+                double estimate = lo + width * (i + (target - seen) / bins[i]);
+                return Math.max(min, Math.min(max, estimate));
+            }
+            seen += bins[i];
+        }
+        return max;
+    }
+
+    /**
+     * Writes the full accumulator state (count, mean, M2, min, max and the
+     * sketch, if any) in a fixed binary layout; readFrom() restores it exactly.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(count);
+        out.writeDouble(mean);
+        out.writeDouble(m2);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeInt(bins != null ? bins.length : 0);
+        if (bins != null) {
+            out.writeDouble(lo);
+            out.writeDouble(hi);
+            for (long b : bins) {
+                out.writeLong(b);
+            }
+        }
+    }
+
+    public static RunningStats readFrom(DataInput in) throws IOException {
+        long count = in.readLong();
+        double mean = in.readDouble();
+        double m2 = in.readDouble();
+        double min = in.readDouble();
+        double max = in.readDouble();
+        int bins = in.readInt();
+        if (count < 0 || bins < 0) {
+            throw new IOException("Corrupt RunningStats record");
+        }
+
+        RunningStats stats = bins > 0
+                ? new RunningStats(in.readDouble(), in.readDouble(), bins)
+                : new RunningStats();
+        stats.count = count;
+        stats.mean = mean;
+        stats.m2 = m2;
+        stats.min = min;
+        stats.max = max;
+        for (int i = 0; i < bins; i++) {
+            stats.bins[i] = in.readLong();
+        }
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + count + ", mean=" + mean() + ", stddev=" + stddev()
+                + ", min=" + min() + ", max=" + max();
+    }
+
+    // test client
+    public static void main(String[] args) {
+        double[] a = {0.59, 0.61, 0.58, 0.60};
+        double[] b = {0.62, 0.57, 0.595};
+
+        RunningStats all = new RunningStats(0.0, 1.0, 1000);
+        RunningStats left = new RunningStats(0.0, 1.0, 1000);
+        RunningStats right = new RunningStats(0.0, 1.0, 1000);
+        for (double x : a) {
+            all.add(x);
+            left.add(x);
+        }
+        for (double x : b) {
+            all.add(x);
+            right.add(x);
+        }
+        left.merge(right);
+
+        System.out.println("Sequential: " + all);
+        System.out.println("Merged:     " + left);
+        System.out.println("median ~ " + all.quantile(0.5) + " (expected: ~0.595)");
+    }
+}
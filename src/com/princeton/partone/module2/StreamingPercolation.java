@@ -0,0 +1,271 @@
+package com.princeton.partone.module2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Does a precomputed n-by-n grid stored on disk percolate?
+ *
+ * Answers in one streaming pass with O(n) memory, Hoshen–Kopelman style:
+ * only the labels of the previous and current row are kept, every row is
+ * relabelled to 0..k-1 after it is processed so the label space never
+ * grows, and each label carries a "connected to top" flag. The pass stops
+ * early as soon as no cluster in the current row still reaches the top.
+ *
+ * File format (big-endian):
+ *   int  magic 0x50455243 ("PERC")
+ *   int  n
+ *   n rows of ceil(n / 8) bytes; site (row, col) is open when bit
+ *   (col - 1) % 8 of byte (col - 1) / 8 of its row is set
+ */
+public class StreamingPercolation {
+    private static final int MAGIC = 0x50455243;
+    private static final int HEADER_BYTES = 8;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    // Source of site states for write(); Percolation::isOpen fits
+    public interface SiteSource {
+        boolean isOpen(int row, int col);
+    }
+
+    private final int n;
+    private int[] previous;      // labels of the previous row, -1 = blocked
+    private int[] current;       // labels of the current row
+    private final int[] parent;  // union-find over the labels of both rows
+    private final boolean[] top; // top[root]: does the label reach the top row?
+    private final int[] remap;   // root -> canonical label, -1 = unassigned
+    private final boolean[] nextTop;
+    private int previousLabels;  // labels 0..previousLabels-1 are in use by previous
+
+    private StreamingPercolation(int n) {
+        this.n = n;
+        this.previous = new int[n];
+        this.current = new int[n];
+        // A row has at most (n + 1) / 2 clusters, so two rows fit in n + 2 labels
+        this.parent = new int[n + 2];
+        this.top = new boolean[n + 2];
+        this.remap = new int[n + 2];
+        this.nextTop = new boolean[n + 2];
+        Arrays.fill(previous, -1);
+        Arrays.fill(remap, -1);
+    }
+
+    /**
+     * Does the grid in file percolate? Reads it one buffer of rows at a
+     * time through a FileChannel; memory is O(n) whatever the file size.
+     */
+    public static boolean percolates(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a percolation grid file: " + file);
+            }
+            int n = header.getInt();
+            if (n <= 0) {
+                throw new IllegalArgumentException("Invalid grid size " + n + " in " + file);
+            }
+
+            int rowBytes = (n + 7) >>> 3;
+            long expected = HEADER_BYTES + (long) rowBytes * n;
+            if (channel.size() != expected) {
+                throw new IllegalArgumentException(
+                        "Expected " + expected + " bytes for n=" + n + ", found " + channel.size());
+            }
+
+            StreamingPercolation checker = new StreamingPercolation(n);
+            int rowsPerBuffer = Math.max(1, BUFFER_BYTES / rowBytes);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(rowsPerBuffer * rowBytes);
+            byte[] row = new byte[rowBytes];
+
+            for (int r = 0; r < n; r += rowsPerBuffer) {
+                int rows = Math.min(rowsPerBuffer, n - r);
+                buffer.clear().limit(rows * rowBytes);
+                readFully(channel, buffer);
+                buffer.flip();
+                for (int i = 0; i < rows; i++) {
+                    buffer.get(row);
+                    if (!checker.addRow(row, r + i == 0)) {
+                        return false;  // nothing in this row reaches the top any more
+                    }
+                }
+            }
+            return checker.reachesTop();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + file, e);
+        }
+    }
+
+    /**
+     * Label one row against the previous one. Returns false if no cluster in
+     * this row is connected to the top, in which case nothing below can be.
+     */
+    private boolean addRow(byte[] row, boolean firstRow) {
+        // Labels 0..k-1 belong to the previous row; new ones start after them
+        int next = previousLabels;
+
+        for (int c = 0; c < n; c++) {
+            if ((row[c >>> 3] & (1 << (c & 7))) == 0) {
+                current[c] = -1;
+                continue;
+            }
+
+            int label;
+            if (c > 0 && current[c - 1] >= 0) {
+                label = current[c - 1];
+            } else {
+                label = next++;
+                parent[label] = label;
+                top[label] = firstRow;
+            }
+            if (previous[c] >= 0) {
+                union(label, previous[c]);
+            }
+            current[c] = label;
+        }
+
+        // Relabel this row's clusters to 0..k-1, carrying their top flags
+        int k = 0;
+        boolean anyTop = false;
+        for (int c = 0; c < n; c++) {
+            if (current[c] < 0) {
+                continue;
+            }
+            int root = find(current[c]);
+            if (remap[root] < 0) {
+                remap[root] = k;
+                nextTop[k] = top[root];
+                anyTop |= top[root];
+                k++;
+            }
+            current[c] = remap[root];
+        }
+        for (int i = 0; i < next; i++) {
+            remap[i] = -1;
+        }
+        for (int i = 0; i < k; i++) {
+            parent[i] = i;
+            top[i] = nextTop[i];
+        }
+
+        int[] swap = previous;
+        previous = current;
+        current = swap;
+        previousLabels = k;
+        return anyTop;
+    }
+
+    // After the last row: does any cluster in it reach the top?
+    private boolean reachesTop() {
+        for (int label : previous) {
+            if (label >= 0 && top[label]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP != rootQ) {
+            parent[rootP] = rootQ;
+            top[rootQ] |= top[rootP];
+        }
+    }
+
+    // Write an n-by-n grid in the format above, one row at a time
+    public static void write(Path file, int n, SiteSource sites) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be greater than 0");
+        }
+
+        int rowBytes = (n + 7) >>> 3;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(n).flip();
+            writeFully(channel, header);
+
+            ByteBuffer row = ByteBuffer.allocate(rowBytes);
+            for (int r = 1; r <= n; r++) {
+                row.clear();
+                for (int b = 0; b < rowBytes; b++) {
+                    int bits = 0;
+                    for (int i = 0; i < 8 && b * 8 + i < n; i++) {
+                        if (sites.isOpen(r, b * 8 + i + 1)) {
+                            bits |= 1 << i;
+                        }
+                    }
+                    row.put((byte) bits);
+                }
+                row.flip();
+                writeFully(channel, row);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + file, e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // test client: random grids must agree with Percolation
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Path file = Files.createTempFile("grid", ".perc");
+        SplittableRandom random = new SplittableRandom(7);
+
+        try {
+            int agree = 0;
+            int trials = 20;
+            for (int t = 0; t < trials; t++) {
+                double p = 0.55 + 0.1 * t / trials;
+                Percolation perc = new Percolation(n);
+                for (int row = 1; row <= n; row++) {
+                    for (int col = 1; col <= n; col++) {
+                        if (random.nextDouble() < p) {
+                            perc.open(row, col);
+                        }
+                    }
+                }
+
+                write(file, n, perc::isOpen);
+                if (percolates(file) == perc.percolates()) {
+                    agree++;
+                }
+            }
+            System.out.println("Agreed with Percolation on " + agree + " of " + trials
+                    + " random grids (expected: " + trials + ")");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -25,12 +25,38 @@ public class SuccessorWithDelete {
      * Time complexity: O(log n) amortized, nearly O(1)
      */
     private int find(int x) {
+        if (UnionFindMetrics.ENABLED) {
+            return findCounted(x);
+        }
+        return compress(x);
+    }
+
+    private int compress(int x) {
         if (parent[x] != x) {
-            parent[x] = find(parent[x]);  // path compression
+            parent[x] = compress(parent[x]);  // path compression
         }
         return parent[x];
     }
 
+    // Same result as compress(), in two passes so the path can be measured
+    private int findCounted(int x) {
+        int root = x;
+        int depth = 0;
+        while (parent[root] != root) {
+            root = parent[root];
+            depth++;
+        }
+        int compressions = 0;
+        while (parent[x] != root) {
+            int next = parent[x];
+            parent[x] = root;
+            x = next;
+            compressions++;
+        }
+        UnionFindMetrics.recordFind(depth, compressions);
+        return root;
+    }
+
     /**
      * Remove x from the set S
      * After removal, x points to its successor
@@ -0,0 +1,172 @@
+package com.princeton.partone.module2;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Union-find that remembers its past: after one pass over a timestamp-sorted
+ * log it answers "were a and b connected at time t?" and "how many components
+ * were there at time t?" for any t.
+ *
+ * Union by rank with no path compression, so parent links are never moved
+ * once made, and each link records the time it was made. The components at
+ * time t are the trees formed by the links made at or before t; since link
+ * times only grow towards the root, walking up from a site while the links
+ * are no later than t reaches its root at time t.
+ * union: O(log n)   connectedAt: O(log n)   componentCountAt: O(log n)
+ */
+public class TimestampedUnionFind {
+    private final int[] parent;
+    private final int[] linkTime;  // time parent[i] was set; meaningless at roots
+    private final byte[] rank;     // see UnionByRank
+    private int[] mergeTimes = new int[16];  // time of each merge, in order
+    private int merges;
+    private int lastTime = Integer.MIN_VALUE;
+
+    public TimestampedUnionFind(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be greater than 0");
+        }
+
+        parent = new int[n];
+        linkTime = new int[n];
+        rank = new byte[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+    }
+
+    // One pass over a timestamp-sorted batch
+    public static TimestampedUnionFind of(int n, EdgeBatch edges) {
+        TimestampedUnionFind uf = new TimestampedUnionFind(n);
+        int[] time = edges.timestamps();
+        int[] member1 = edges.member1();
+        int[] member2 = edges.member2();
+        for (int i = 0; i < edges.size(); i++) {
+            uf.union(member1[i], member2[i], time[i]);
+        }
+        return uf;
+    }
+
+    // One streaming pass over a timestamp-sorted log file (see FriendshipLog)
+    public static TimestampedUnionFind of(int n, Path log) {
+        TimestampedUnionFind uf = new TimestampedUnionFind(n);
+        FriendshipLog.read(log, (timestamp, p, q) -> {
+            uf.union(p, q, timestamp);
+            return true;
+        });
+        return uf;
+    }
+
+    /**
+     * Connects p and q at time t; times must not decrease from one call to
+     * the next. Returns false if they were already connected.
+     */
+    public boolean union(int p, int q, int t) {
+        if (t < lastTime) {
+            throw new IllegalArgumentException("Time went backwards: " + t + " after " + lastTime);
+        }
+        lastTime = t;
+
+        int rootP = find(p, Integer.MAX_VALUE);
+        int rootQ = find(q, Integer.MAX_VALUE);
+        if (rootP == rootQ) {
+            return false;
+        }
+
+        linkTime[UnionByRank.link(parent, rank, rootP, rootQ)] = t;
+
+        if (merges == mergeTimes.length) {
+            mergeTimes = Arrays.copyOf(mergeTimes, merges * 2);
+        }
+        mergeTimes[merges++] = t;
+        return true;
+    }
+
+    // Root of p's component at time t: follow links made at or before t
+    private int find(int p, int t) {
+        validate(p);
+        while (p != parent[p] && linkTime[p] <= t) {
+            p = parent[p];
+        }
+        return p;
+    }
+
+    // were p and q in the same component at time t?
+    public boolean connectedAt(int p, int q, int t) {
+        return find(p, t) == find(q, t);
+    }
+
+    // are p and q connected now, after every union so far?
+    public boolean connected(int p, int q) {
+        return connectedAt(p, q, Integer.MAX_VALUE);
+    }
+
+    // number of components at time t: n minus the merges made at or before t
+    public int componentCountAt(int t) {
+        int lo = 0;
+        int hi = merges;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (mergeTimes[mid] <= t) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return parent.length - lo;
+    }
+
+    public int count() {
+        return parent.length - merges;
+    }
+
+    // earliest time at which p and q were connected, -1 if never, Integer.MIN_VALUE if p == q
+    public int connectedSince(int p, int q) {
+        if (!connected(p, q)) {
+            return -1;
+        }
+        if (p == q) {
+            return Integer.MIN_VALUE;
+        }
+
+        // The latest link on the path between them; link times increase upwards
+        int latest = Integer.MIN_VALUE;
+        int a = p;
+        int b = q;
+        while (a != b) {
+            if (rank[a] < rank[b] || (rank[a] == rank[b] && a != parent[a])) {
+                latest = Math.max(latest, linkTime[a]);
+                a = parent[a];
+            } else {
+                latest = Math.max(latest, linkTime[b]);
+                b = parent[b];
+            }
+        }
+        return latest;
+    }
+
+    private void validate(int p) {
+        if (p < 0 || p >= parent.length) {
+            throw new IllegalArgumentException("Index out of bounds: " + p + ", n=" + parent.length);
+        }
+    }
+
+    // test client
+    public static void main(String[] args) {
+        TimestampedUnionFind uf = new TimestampedUnionFind(5);
+        uf.union(0, 1, 1);
+        uf.union(2, 3, 2);
+        uf.union(0, 2, 3);
+        uf.union(1, 4, 4);
+        uf.union(3, 4, 5);
+
+        System.out.println("connectedAt(1, 3, 2) = " + uf.connectedAt(1, 3, 2) + " (expected: false)");
+        System.out.println("connectedAt(1, 3, 3) = " + uf.connectedAt(1, 3, 3) + " (expected: true)");
+        System.out.println("connectedAt(0, 4, 3) = " + uf.connectedAt(0, 4, 3) + " (expected: false)");
+        System.out.println("componentCountAt(0) = " + uf.componentCountAt(0) + " (expected: 5)");
+        System.out.println("componentCountAt(2) = " + uf.componentCountAt(2) + " (expected: 3)");
+        System.out.println("componentCountAt(9) = " + uf.componentCountAt(9) + " (expected: 1)");
+        System.out.println("connectedSince(1, 3) = " + uf.connectedSince(1, 3) + " (expected: 3)");
+    }
+}
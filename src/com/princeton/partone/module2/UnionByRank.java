@@ -0,0 +1,27 @@
+package com.princeton.partone.module2;
+
+/**
+ * The union-by-rank linking step shared by the rank-based union-finds.
+ * Ranks never exceed lg n, so a byte per site holds them.
+ */
+final class UnionByRank {
+    private UnionByRank() {
+    }
+
+    /**
+     * Links the distinct roots rootP and rootQ, attaching the lower rank
+     * root under the higher; on a tie rootQ goes under rootP, whose rank
+     * grows. Returns the root that was attached, now a child.
+     */
+    static int link(int[] parent, byte[] rank, int rootP, int rootQ) {
+        if (rank[rootP] < rank[rootQ]) {
+            parent[rootP] = rootQ;
+            return rootP;
+        }
+        if (rank[rootP] == rank[rootQ]) {
+            rank[rootP]++;
+        }
+        parent[rootQ] = rootP;
+        return rootQ;
+    }
+}
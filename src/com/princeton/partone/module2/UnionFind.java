@@ -1,6 +1,17 @@
 package com.princeton.partone.module2;
 
-class UnionFind {
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+class UnionFind implements DynamicConnectivity {
     private int[] parent;
     private int[] size;
     private int count;  // number of components
@@ -8,30 +19,80 @@ class UnionFind {
     public UnionFind(int n) {
         parent = new int[n];
         size = new int[n];
-        count = n;
+        reset();
+    }
+
+    // Back to n singleton components, reusing the arrays (no allocation)
+    @Override
+    public void reset() {
+        count = parent.length;
 
-        for (int i = 0; i < n; i++) {
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    @Override
+    public void reset(int k) {
+        count = parent.length;
+
+        for (int i = 0; i < k; i++) {
             parent[i] = i;
             size[i] = 1;
         }
     }
 
     // Find with path compression
+    @Override
     public int find(int x) {
+        if (UnionFindMetrics.ENABLED) {
+            return findCounted(x);
+        }
+        return compress(x);
+    }
+
+    private int compress(int x) {
         if (parent[x] != x) {
-            parent[x] = find(parent[x]);  // path compression
+            parent[x] = compress(parent[x]);  // path compression
         }
         return parent[x];
     }
 
+    // Same result as compress(), in two passes so the path can be measured
+    private int findCounted(int x) {
+        int root = x;
+        int depth = 0;
+        while (parent[root] != root) {
+            root = parent[root];
+            depth++;
+        }
+        int compressions = 0;
+        while (parent[x] != root) {
+            int next = parent[x];
+            parent[x] = root;
+            x = next;
+            compressions++;
+        }
+        UnionFindMetrics.recordFind(depth, compressions);
+        return root;
+    }
+
     // Union by size
+    @Override
     public boolean union(int x, int y) {
         int rootX = find(x);
         int rootY = find(y);
 
         if (rootX == rootY) {
+            if (UnionFindMetrics.ENABLED) {
+                UnionFindMetrics.recordUnion(false);
+            }
             return false;  // Already connected
         }
+        if (UnionFindMetrics.ENABLED) {
+            UnionFindMetrics.recordUnion(true);
+        }
 
         // Attach smaller tree to larger tree
         if (size[rootX] < size[rootY]) {
@@ -46,12 +107,29 @@ class UnionFind {
         return true;
     }
 
-    public boolean isFullyConnected() {
-        return count == 1;
+    @Override
+    public int count() {
+        return count;
+    }
+
+    // Raw arrays, for Percolation snapshots to save and restore directly
+    int[] parents() {
+        return parent;
     }
 
+    int[] sizes() {
+        return size;
+    }
+
+    // Component count after the arrays were restored directly
+    void restoreCount(int count) {
+        this.count = count;
+    }
+
+    /** @deprecated use {@link #count()} */
+    @Deprecated
     public int getCount() {
-        return count;
+        return count();
     }
 }
 
@@ -76,7 +154,16 @@ class SocialNetworkConnectivity {
      * @return earliest timestamp when all connected, or -1 if never connected
      */
     public static int findEarliestConnectionTime(int n, Friendship[] friendships) {
-        UnionFind uf = new UnionFind(n);
+        return findEarliestConnectionTime(n, friendships, UnionFind::new);
+    }
+
+    /**
+     * Same as above, using the union-find built by the given factory
+     * (e.g. a UnionFindStrategy constant)
+     */
+    public static int findEarliestConnectionTime(int n, Friendship[] friendships,
+                                                 IntFunction<? extends DynamicConnectivity> unionFind) {
+        DynamicConnectivity uf = unionFind.apply(n);
 
         for (Friendship friendship : friendships) {
             uf.union(friendship.member1, friendship.member2);
@@ -89,6 +176,130 @@ class SocialNetworkConnectivity {
         return -1;  // Not all members connected
     }
 
+    /**
+     * Same as above, streaming a timestamp-sorted log file (see FriendshipLog
+     * for the binary and text formats) straight into the union-find. Nothing
+     * is materialized, and reading stops at the edge that connects everyone.
+     */
+    public static int findEarliestConnectionTime(int n, Path log) {
+        return findEarliestConnectionTime(n, log, UnionFind::new);
+    }
+
+    public static int findEarliestConnectionTime(int n, Path log,
+                                                 IntFunction<? extends DynamicConnectivity> unionFind) {
+        DynamicConnectivity uf = unionFind.apply(n);
+        int[] result = {-1, Integer.MIN_VALUE};  // {answer, previous timestamp}
+        FriendshipLog.read(log, (timestamp, member1, member2) -> {
+            if (timestamp < result[1]) {
+                throw new IllegalArgumentException("Log is not sorted by timestamp at t=" + timestamp);
+            }
+            if (member1 < 0 || member1 >= n || member2 < 0 || member2 >= n) {
+                throw new IllegalArgumentException(
+                        "Member out of range at t=" + timestamp + ": " + member1 + "-" + member2 + ", n=" + n);
+            }
+            result[1] = timestamp;
+
+            uf.union(member1, member2);
+            if (uf.isFullyConnected()) {
+                result[0] = timestamp;
+                return false;
+            }
+            return true;
+        });
+        return result[0];
+    }
+
+    /**
+     * Same as above for a timestamp-sorted EdgeBatch: one bulk unionAll over
+     * the member arrays, with no per-edge objects
+     */
+    public static int findEarliestConnectionTime(int n, EdgeBatch edges) {
+        return findEarliestConnectionTime(n, edges, UnionFind::new);
+    }
+
+    public static int findEarliestConnectionTime(int n, EdgeBatch edges,
+                                                 IntFunction<? extends DynamicConnectivity> unionFind) {
+        int i = unionFind.apply(n).unionAll(edges, 0, edges.size());
+        return i >= 0 ? edges.timestamp(i) : -1;
+    }
+
+    /**
+     * Same answer for edges in any order, without sorting them: a
+     * bottleneck-spanning-tree search (see EarliestConnection) using the
+     * given number of threads. O(m) expected instead of O(m log m).
+     */
+    public static int findEarliestConnectionTimeUnsorted(int n, EdgeBatch edges, int threads) {
+        if (n <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("n and threads must be greater than 0");
+        }
+        return EarliestConnection.find(n, edges, threads);
+    }
+
+    public static int findEarliestConnectionTimeUnsorted(int n, Friendship[] friendships, int threads) {
+        return findEarliestConnectionTimeUnsorted(n, toBatch(friendships), threads);
+    }
+
+    /**
+     * Final connectivity of a whole batch, in any order, ingested on the
+     * given number of threads: each thread unions a contiguous slice of the
+     * edges into one shared ConcurrentUnionFind. Timestamps are ignored;
+     * query the result with connected() and count().
+     */
+    public static DynamicConnectivity connectAll(int n, EdgeBatch edges, int threads) {
+        if (n <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("n and threads must be greater than 0");
+        }
+        edges.validateMembers(n);
+
+        ConcurrentUnionFind uf = new ConcurrentUnionFind(n);
+        if (threads == 1) {
+            uf.unionAll(edges, 0, edges.size());
+            return uf;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            uf.unionParallel(edges.member1(), edges.member2(), 0, edges.size(), pool);
+        } finally {
+            pool.shutdown();
+        }
+        return uf;
+    }
+
+    // Converts an array of Friendship objects to an EdgeBatch
+    static EdgeBatch toBatch(Friendship[] friendships) {
+        EdgeBatch batch = new EdgeBatch(friendships.length);
+        for (Friendship f : friendships) {
+            batch.add(f.timestamp, f.member1, f.member2);
+        }
+        return batch;
+    }
+
+    // Write friendships as a binary log (see FriendshipLog), e.g. to convert an array
+    static void writeLog(Path file, Friendship[] friendships) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            buffer.putInt(FriendshipLog.MAGIC);
+            for (Friendship f : friendships) {
+                if (buffer.remaining() < FriendshipLog.RECORD_BYTES) {
+                    flush(channel, buffer);
+                }
+                buffer.putInt(f.timestamp).putInt(f.member1).putInt(f.member2);
+            }
+            flush(channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write friendship log " + file, e);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
     // Test example
     public static void main(String[] args) {
         int n = 5;  // 5 members: 0, 1, 2, 3, 4
@@ -109,16 +320,49 @@ class SocialNetworkConnectivity {
             System.out.println("Not all members are connected");
         }
 
+        // Every union-find strategy must agree
+        for (UnionFindStrategy strategy : UnionFindStrategy.values()) {
+            System.out.println(strategy + ": " + findEarliestConnectionTime(n, friendships, strategy)
+                    + " (expected: 4)");
+        }
+
+        System.out.println("EdgeBatch: " + findEarliestConnectionTime(n, toBatch(friendships)) + " (expected: 4)");
+
+        Friendship[] shuffled = {friendships[4], friendships[1], friendships[3], friendships[0], friendships[2]};
+        System.out.println("Unsorted: " + findEarliestConnectionTimeUnsorted(n, shuffled, 2) + " (expected: 4)");
+        System.out.println("connectAll: " + connectAll(n, toBatch(shuffled), 2).count() + " component(s) (expected: 1)");
+
+        // The same log streamed from a file, in both formats
+        try {
+            Path binary = Files.createTempFile("friendships", ".bin");
+            Path text = Files.createTempFile("friendships", ".txt");
+            try {
+                writeLog(binary, friendships);
+                StringBuilder lines = new StringBuilder();
+                for (Friendship f : friendships) {
+                    lines.append(f.timestamp).append(' ').append(f.member1).append(' ').append(f.member2).append('\n');
+                }
+                Files.write(text, lines.toString().getBytes(StandardCharsets.US_ASCII));
+                System.out.println("Binary log: " + findEarliestConnectionTime(n, binary) + " (expected: 4)");
+                System.out.println("Text log: " + findEarliestConnectionTime(n, text) + " (expected: 4)");
+            } finally {
+                Files.deleteIfExists(binary);
+                Files.deleteIfExists(text);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
         // Additional test: Show component count evolution
         System.out.println("\nComponent evolution:");
         UnionFind uf = new UnionFind(n);
-        System.out.println("Initial components: " + uf.getCount());
+        System.out.println("Initial components: " + uf.count());
 
         for (Friendship f : friendships) {
             uf.union(f.member1, f.member2);
             System.out.println("After timestamp " + f.timestamp +
                     " (connecting " + f.member1 + "-" + f.member2 +
-                    "): " + uf.getCount() + " components");
+                    "): " + uf.count() + " components");
         }
     }
 }
@@ -0,0 +1,208 @@
+package com.princeton.partone.module2;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+/**
+ * Optional hot-path counters for the union-find structures and Percolation.
+ *
+ * Off unless the JVM is started with -Dunionfind.metrics=true. ENABLED is a
+ * static final constant, so when it is false the JIT folds every
+ * "if (UnionFindMetrics.ENABLED)" guard away and the hot paths run exactly
+ * as before. When on, counters are LongAdders, so parallel trials do not
+ * contend on one cache line.
+ *
+ * Counted: finds, unions, path-compression steps (parent links rewritten),
+ * find-path depth (sum and maximum), approximate parent-array accesses and
+ * opened sites. Read them with snapshot(), or record with JFR: a periodic
+ * UnionFindStatistics event carries the totals, and PercolationStats emits
+ * a PercolationTrial event per trial.
+ */
+public final class UnionFindMetrics {
+    public static final boolean ENABLED = Boolean.getBoolean("unionfind.metrics");
+
+    private static final LongAdder FINDS = new LongAdder();
+    private static final LongAdder UNIONS = new LongAdder();
+    private static final LongAdder COMPRESSIONS = new LongAdder();
+    private static final LongAdder DEPTH_SUM = new LongAdder();
+    private static final LongAccumulator MAX_DEPTH = new LongAccumulator(Math::max, 0);
+    private static final LongAdder ARRAY_ACCESSES = new LongAdder();
+    private static final LongAdder OPENS = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            FlightRecorder.addPeriodicEvent(StatisticsEvent.class, () -> {
+                Snapshot s = snapshot();
+                StatisticsEvent event = new StatisticsEvent();
+                event.finds = s.finds();
+                event.unions = s.unions();
+                event.compressions = s.compressions();
+                event.averageDepth = s.averageDepth();
+                event.maxDepth = s.maxDepth();
+                event.arrayAccesses = s.arrayAccesses();
+                event.opens = s.opens();
+                event.commit();
+            });
+        }
+    }
+
+    private UnionFindMetrics() {
+    }
+
+    /**
+     * One find that followed depth parent links and rewrote compressions of
+     * them; counted as a read per link plus the root check, and a read and a
+     * write per rewritten link.
+     */
+    static void recordFind(int depth, int compressions) {
+        FINDS.increment();
+        DEPTH_SUM.add(depth);
+        MAX_DEPTH.accumulate(depth);
+        COMPRESSIONS.add(compressions);
+        ARRAY_ACCESSES.add(depth + 1 + 2L * compressions);
+    }
+
+    // One union call; a merge costs a parent write and a size read-modify-write
+    static void recordUnion(boolean merged) {
+        UNIONS.increment();
+        if (merged) {
+            ARRAY_ACCESSES.add(4);
+        }
+    }
+
+    static void recordOpen() {
+        OPENS.increment();
+    }
+
+    // current totals since start-up or the last reset()
+    public static Snapshot snapshot() {
+        return new Snapshot(FINDS.sum(), UNIONS.sum(), COMPRESSIONS.sum(), DEPTH_SUM.sum(),
+                MAX_DEPTH.get(), ARRAY_ACCESSES.sum(), OPENS.sum());
+    }
+
+    // zeroes every counter; not atomic with respect to concurrent updates
+    public static void reset() {
+        FINDS.reset();
+        UNIONS.reset();
+        COMPRESSIONS.reset();
+        DEPTH_SUM.reset();
+        MAX_DEPTH.reset();
+        ARRAY_ACCESSES.reset();
+        OPENS.reset();
+    }
+
+    // An immutable copy of the counters
+    public static final class Snapshot {
+        private final long finds;
+        private final long unions;
+        private final long compressions;
+        private final long depthSum;
+        private final long maxDepth;
+        private final long arrayAccesses;
+        private final long opens;
+
+        private Snapshot(long finds, long unions, long compressions, long depthSum, long maxDepth,
+                         long arrayAccesses, long opens) {
+            this.finds = finds;
+            this.unions = unions;
+            this.compressions = compressions;
+            this.depthSum = depthSum;
+            this.maxDepth = maxDepth;
+            this.arrayAccesses = arrayAccesses;
+            this.opens = opens;
+        }
+
+        public long finds() {
+            return finds;
+        }
+
+        public long unions() {
+            return unions;
+        }
+
+        public long compressions() {
+            return compressions;
+        }
+
+        // mean number of parent links followed per find, NaN before the first
+        public double averageDepth() {
+            return finds > 0 ? (double) depthSum / finds : Double.NaN;
+        }
+
+        public long maxDepth() {
+            return maxDepth;
+        }
+
+        public long arrayAccesses() {
+            return arrayAccesses;
+        }
+
+        public long opens() {
+            return opens;
+        }
+
+        // counts accumulated between earlier and this snapshot (maximum depth is not differenced)
+        public Snapshot minus(Snapshot earlier) {
+            return new Snapshot(finds - earlier.finds, unions - earlier.unions,
+                    compressions - earlier.compressions, depthSum - earlier.depthSum, maxDepth,
+                    arrayAccesses - earlier.arrayAccesses, opens - earlier.opens);
+        }
+
+        @Override
+        public String toString() {
+            return "finds=" + finds + ", unions=" + unions + ", compressions=" + compressions
+                    + ", averageDepth=" + averageDepth() + ", maxDepth=" + maxDepth
+                    + ", arrayAccesses=" + arrayAccesses + ", opens=" + opens;
+        }
+    }
+
+    @Name("com.princeton.partone.module2.UnionFindStatistics")
+    @Label("Union-Find Statistics")
+    @Category("Percolation")
+    @Description("Running totals of the union-find hot-path counters")
+    @Period("1 s")
+    static final class StatisticsEvent extends Event {
+        @Label("Finds")
+        long finds;
+        @Label("Unions")
+        long unions;
+        @Label("Compressions")
+        long compressions;
+        @Label("Average Depth")
+        double averageDepth;
+        @Label("Max Depth")
+        long maxDepth;
+        @Label("Array Accesses")
+        long arrayAccesses;
+        @Label("Opened Sites")
+        long opens;
+    }
+
+    @Name("com.princeton.partone.module2.PercolationTrial")
+    @Label("Percolation Trial")
+    @Category("Percolation")
+    @Description("One PercolationStats trial, from the first open to percolation")
+    static final class TrialEvent extends Event {
+        @Label("Grid Size")
+        int n;
+        @Label("Open Sites")
+        int openSites;
+        @Label("Threshold")
+        double threshold;
+    }
+
+    // test client: run with -Dunionfind.metrics=true
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        new PercolationStats(n, 20, 1L, 1);
+        System.out.println("enabled=" + ENABLED);
+        System.out.println(snapshot());
+    }
+}
@@ -0,0 +1,68 @@
+package com.princeton.partone.module2;
+
+import java.util.function.IntFunction;
+
+/**
+ * The union-find implementations in this package, by name, as factories.
+ * Anything that takes an IntFunction<DynamicConnectivity> accepts these
+ * as well as a plain constructor reference such as {@code RemUF::new}.
+ */
+public enum UnionFindStrategy implements IntFunction<DynamicConnectivity> {
+    QUICK_FIND {
+        @Override
+        public DynamicConnectivity apply(int n) {
+            return new QuickFindUF(n);
+        }
+    },
+    QUICK_UNION {
+        @Override
+        public DynamicConnectivity apply(int n) {
+            return new QuickUnionUF(n);
+        }
+    },
+    WEIGHTED_COMPRESSED {
+        @Override
+        public DynamicConnectivity apply(int n) {
+            return new UnionFind(n);
+        }
+    },
+    PATH_HALVING {
+        @Override
+        public DynamicConnectivity apply(int n) {
+            return new PathHalvingUF(n);
+        }
+    },
+    PATH_SPLITTING {
+        @Override
+        public DynamicConnectivity apply(int n) {
+            return new PathSplittingUF(n);
+        }
+    },
+    REM {
+        @Override
+        public DynamicConnectivity apply(int n) {
+            return new RemUF(n);
+        }
+    },
+    CONCURRENT {
+        @Override
+        public DynamicConnectivity apply(int n) {
+            return new ConcurrentUnionFind(n);
+        }
+    };
+
+    // test client: the same unions must give the same components under every strategy
+    public static void main(String[] args) {
+        int[][] unions = {{4, 3}, {3, 8}, {6, 5}, {9, 4}, {2, 1}, {8, 9}, {5, 0}, {7, 2}, {6, 1}, {1, 0}, {6, 7}};
+
+        for (UnionFindStrategy strategy : values()) {
+            DynamicConnectivity uf = strategy.apply(10);
+            for (int[] u : unions) {
+                uf.union(u[0], u[1]);
+            }
+            System.out.println(strategy + ": components=" + uf.count() + " (expected: 2)"
+                    + ", connected(3,9)=" + uf.connected(3, 9) + " (expected: true)"
+                    + ", connected(0,9)=" + uf.connected(0, 9) + " (expected: false)");
+        }
+    }
+}
@@ -19,6 +19,9 @@ public class UnionFindWithMax {
 
     // Find root with path compression
     private int root(int i) {
+        if (UnionFindMetrics.ENABLED) {
+            return rootCounted(i);
+        }
         while (i != parent[i]) {
             parent[i] = parent[parent[i]];  // path compression
             i = parent[i];
@@ -26,6 +29,25 @@ public class UnionFindWithMax {
         return i;
     }
 
+    // Same halving as root(), measuring the path: each step walks two links, or one below the root
+    private int rootCounted(int i) {
+        int depth = 0;
+        int rewrites = 0;
+        while (i != parent[i]) {
+            int grandparent = parent[parent[i]];
+            if (grandparent != parent[i]) {
+                parent[i] = grandparent;
+                rewrites++;
+                depth += 2;
+            } else {
+                depth++;
+            }
+            i = grandparent;
+        }
+        UnionFindMetrics.recordFind(depth, rewrites);
+        return i;
+    }
+
     /**
      * Returns the largest element in the connected component containing i
      * Time complexity: O(log n) with path compression
@@ -42,6 +64,9 @@ public class UnionFindWithMax {
         int rootP = root(p);
         int rootQ = root(q);
 
+        if (UnionFindMetrics.ENABLED) {
+            UnionFindMetrics.recordUnion(rootP != rootQ);
+        }
         if (rootP == rootQ) {
             return;  // Already connected
         }
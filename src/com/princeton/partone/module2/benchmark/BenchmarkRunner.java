@@ -0,0 +1,108 @@
+package com.princeton.partone.module2.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+
+/**
+ * A minimal JMH-style harness: warmup iterations, then timed measurement
+ * iterations, reporting throughput and bytes allocated per operation.
+ *
+ * Each benchmark is a LongSupplier that performs some number of operations
+ * and returns a value derived from its work; the values are folded into a
+ * volatile sink so the JIT cannot eliminate the work as dead code. An
+ * iteration calls the body repeatedly until its time budget is spent, so
+ * fast bodies are not timed one nanoTime-sized call at a time.
+ *
+ * Allocation is read from the calling thread only, so bodies must do their
+ * work on that thread; anything handed to a pool goes uncounted.
+ */
+public class BenchmarkRunner {
+    private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private volatile long sink;
+    // calls and elapsed time of the last iteration; fields, so measuring allocates nothing
+    private long calls;
+    private long elapsed;
+
+    // iterations of 100 ms each
+    public BenchmarkRunner(int warmupIterations, int measurementIterations) {
+        this(warmupIterations, measurementIterations, 100);
+    }
+
+    public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+        if (warmupIterations < 0 || measurementIterations <= 0 || iterationMillis <= 0) {
+            throw new IllegalArgumentException(
+                    "Need warmupIterations >= 0, measurementIterations > 0 and iterationMillis > 0");
+        }
+
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    public static void printHeader() {
+        System.out.printf("%-48s %14s %12s %14s%n", "benchmark", "ops/s", "error(%)", "bytes/op");
+    }
+
+    /**
+     * Run body (which performs opsPerCall operations per call) and print one
+     * result line: mean throughput, its 95% error, and allocation per op.
+     */
+    public void run(String name, long opsPerCall, LongSupplier body) {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(body);
+        }
+
+        double[] throughput = new double[measurementIterations];
+        boolean trackAllocation = allocatedBytes() >= 0;
+        long allocated = 0;
+        long totalCalls = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            long bytesBefore = allocatedBytes();
+            iteration(body);
+            allocated += allocatedBytes() - bytesBefore;
+            totalCalls += calls;
+            throughput[i] = calls * opsPerCall * 1e9 / Math.max(1, elapsed);
+        }
+
+        double mean = 0.0;
+        for (double t : throughput) {
+            mean += t;
+        }
+        mean /= measurementIterations;
+
+        double variance = 0.0;
+        for (double t : throughput) {
+            variance += (t - mean) * (t - mean);
+        }
+        double error = measurementIterations > 1
+                ? 1.96 * Math.sqrt(variance / (measurementIterations - 1) / measurementIterations)
+                : Double.NaN;
+
+        double bytesPerOp = !trackAllocation ? Double.NaN
+                : (double) allocated / ((double) opsPerCall * totalCalls);
+        System.out.printf("%-48s %14.0f %12.1f %14.2f%n", name, mean, 100.0 * error / mean, bytesPerOp);
+    }
+
+    // Calls body until the time budget is spent, leaving the count in calls and the time in elapsed
+    private void iteration(LongSupplier body) {
+        calls = 0;
+        long start = System.nanoTime();
+        do {
+            sink += body.getAsLong();
+            calls++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+    }
+
+    // Bytes allocated by this thread so far, or -1 if the JVM can't tell us
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,192 @@
+package com.princeton.partone.module2.benchmark;
+
+import com.princeton.partone.module2.DynamicConnectivity;
+import com.princeton.partone.module2.Percolation;
+import com.princeton.partone.module2.PercolationStats;
+import com.princeton.partone.module2.UnionFindStrategy;
+import com.princeton.partone.module2.UnionFindWithMax;
+
+import java.util.SplittableRandom;
+
+/**
+ * Benchmarks for the percolation and union-find hot paths, across grid
+ * sizes, fill orders and union-find strategies:
+ *   open      - open every site of the grid, checking percolates() after each
+ *   isFull    - query every site of a grid filled to p = 0.6
+ *   trial     - full percolation trials: open random sites until it percolates
+ *   union/find- random unions, then random finds, on n^2 elements
+ * Throughput is ops/s; allocation is bytes/op on the calling thread, so
+ * every benchmark does all its work there.
+ *
+ * Usage: java com.princeton.partone.module2.benchmark.PercolationBenchmarks [n ...]
+ */
+public class PercolationBenchmarks {
+    private static final long SEED = 20240917L;
+    // Quadratic strategies are skipped above this many sites
+    private static final int QUADRATIC_LIMIT = 1 << 12;
+
+    enum FillOrder { RANDOM, ROW_MAJOR }
+
+    public static void main(String[] args) {
+        int[] sizes = {64, 256, 1024};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(5, 10);
+        BenchmarkRunner.printHeader();
+
+        for (int n : sizes) {
+            for (UnionFindStrategy strategy : UnionFindStrategy.values()) {
+                if (isQuadratic(strategy) && n * n > QUADRATIC_LIMIT) {
+                    continue;
+                }
+                for (FillOrder order : FillOrder.values()) {
+                    benchmarkOpen(runner, n, strategy, order);
+                }
+                benchmarkIsFull(runner, n, strategy);
+                benchmarkTrial(runner, n, strategy);
+                benchmarkUnionFind(runner, n * n, strategy);
+            }
+            benchmarkUnionFindWithMax(runner, n * n);
+        }
+    }
+
+    private static boolean isQuadratic(UnionFindStrategy strategy) {
+        return strategy == UnionFindStrategy.QUICK_FIND || strategy == UnionFindStrategy.QUICK_UNION;
+    }
+
+    private static void benchmarkOpen(BenchmarkRunner runner, int n, UnionFindStrategy strategy,
+                                      FillOrder order) {
+        int[] rows = new int[n * n];
+        int[] cols = new int[n * n];
+        int[] sites = permutation(n * n, order == FillOrder.RANDOM);
+        for (int i = 0; i < sites.length; i++) {
+            rows[i] = sites[i] / n + 1;
+            cols[i] = sites[i] % n + 1;
+        }
+
+        Percolation perc = new Percolation(n, strategy);
+        runner.run("open/" + order + "/" + strategy + "/n=" + n, (long) n * n, () -> {
+            perc.reset();
+            long percolatedAt = 0;
+            for (int i = 0; i < rows.length; i++) {
+                perc.open(rows[i], cols[i]);
+                if (percolatedAt == 0 && perc.percolates()) {
+                    percolatedAt = i;
+                }
+            }
+            return percolatedAt;
+        });
+        runner.run("openAll/" + order + "/" + strategy + "/n=" + n, (long) n * n, () -> {
+            perc.reset();
+            return perc.openAll(sites, 0, sites.length);
+        });
+    }
+
+    private static void benchmarkIsFull(BenchmarkRunner runner, int n, UnionFindStrategy strategy) {
+        Percolation perc = new Percolation(n, strategy);
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int row = 1; row <= n; row++) {
+            for (int col = 1; col <= n; col++) {
+                if (random.nextDouble() < 0.6) {
+                    perc.open(row, col);
+                }
+            }
+        }
+
+        runner.run("isFull/" + strategy + "/n=" + n, (long) n * n, () -> {
+            long full = 0;
+            for (int row = 1; row <= n; row++) {
+                for (int col = 1; col <= n; col++) {
+                    if (perc.isFull(row, col)) {
+                        full++;
+                    }
+                }
+            }
+            return full;
+        });
+    }
+
+    // PercolationStats' own seeded trial, run on this thread with one reused grid
+    private static void benchmarkTrial(BenchmarkRunner runner, int n, UnionFindStrategy strategy) {
+        Percolation perc = new Percolation(n, strategy);
+        SplittableRandom random = new SplittableRandom(SEED);
+        runner.run("trial/" + strategy + "/n=" + n, 1, () -> {
+            PercolationStats.runTrial(perc, n, random);
+            return perc.numberOfOpenSites();
+        });
+    }
+
+    private static void benchmarkUnionFind(BenchmarkRunner runner, int sites, UnionFindStrategy strategy) {
+        int[] p = randomSites(sites, SEED);
+        int[] q = randomSites(sites, SEED + 1);
+        DynamicConnectivity uf = strategy.apply(sites);
+
+        runner.run("union/" + strategy + "/N=" + sites, sites, () -> {
+            uf.reset();
+            for (int i = 0; i < sites; i++) {
+                uf.union(p[i], q[i]);
+            }
+            return uf.count();
+        });
+        runner.run("find/" + strategy + "/N=" + sites, sites, () -> {
+            long sum = 0;
+            for (int i = 0; i < sites; i++) {
+                sum += uf.find(p[i]);
+            }
+            return sum;
+        });
+    }
+
+    // UnionFindWithMax has no reset(), so its union numbers include allocation
+    private static void benchmarkUnionFindWithMax(BenchmarkRunner runner, int sites) {
+        int[] p = randomSites(sites, SEED);
+        int[] q = randomSites(sites, SEED + 1);
+        UnionFindWithMax[] uf = new UnionFindWithMax[1];
+
+        runner.run("union/UnionFindWithMax/N=" + sites, sites, () -> {
+            uf[0] = new UnionFindWithMax(sites);
+            for (int i = 0; i < sites; i++) {
+                uf[0].union(p[i], q[i]);
+            }
+            return uf[0].find(0);
+        });
+        runner.run("find/UnionFindWithMax/N=" + sites, sites, () -> {
+            long sum = 0;
+            for (int i = 0; i < sites; i++) {
+                sum += uf[0].find(p[i]);
+            }
+            return sum;
+        });
+    }
+
+    private static int[] permutation(int size, boolean shuffle) {
+        int[] a = new int[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = i;
+        }
+        if (shuffle) {
+            SplittableRandom random = new SplittableRandom(SEED);
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = a[i];
+                a[i] = a[j];
+                a[j] = tmp;
+            }
+        }
+        return a;
+    }
+
+    private static int[] randomSites(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] a = new int[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = random.nextInt(size);
+        }
+        return a;
+    }
+}